@@ -0,0 +1,95 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+public class ChunkReadWorkload implements benchmarks.Workload {
+    private static final Path NULL_DEVICE = Path.of("/dev/null");
+    private static final String PATH = "benchmark/data.bin";
+
+    private final Path file;
+    private final String mode;
+    private final long chunksNum;
+    private final BlockCache blockCache;
+    private final WritableByteChannel sink;
+    private long chunk;
+
+    public ChunkReadWorkload(Map<String, String> params) throws IOException {
+        long fileSize = Long.parseLong(params.get("fileSize"));
+        mode = params.get("mode");
+        chunksNum = Math.max(1, fileSize / Message.MAX_DATA_SIZE);
+        blockCache = mode.equals("cached") ? new BlockCache(fileSize) : null;
+        sink = Files.isWritable(NULL_DEVICE)
+                ? FileChannel.open(NULL_DEVICE, StandardOpenOption.WRITE)
+                : Channels.newChannel(OutputStream.nullOutputStream());
+
+        file = Files.createTempFile("netstorage-import", ".bin");
+        ByteBuf data = Payloads.generate("random", Message.MAX_DATA_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (long i = 0; i < chunksNum; i++) {
+                ServerHandler.writeData(fileChannel, i * Message.MAX_DATA_SIZE, data);
+            }
+        } finally {
+            data.release();
+        }
+    }
+
+    @Override
+    public Object run() throws Exception {
+        long position = chunk++ % chunksNum * Message.MAX_DATA_SIZE;
+        return switch (mode) {
+            case "region" -> transfer(position);
+            case "chunked" -> read(new ChunkedFileStream(0, Message.IMPORT_COMMAND, PATH, position,
+                    new ChunkedNioFile(FileChannel.open(file, StandardOpenOption.READ), position, Message.MAX_DATA_SIZE, Message.MAX_DATA_SIZE)));
+            case "cached" -> read(new CachedFileStream(0, Message.IMPORT_COMMAND, PATH, position,
+                    blockCache, file, position, Message.MAX_DATA_SIZE));
+            default -> throw new IllegalArgumentException("Неизвестный режим чтения: " + mode);
+        };
+    }
+
+    private long transfer(long position) throws IOException {
+        DefaultFileRegion region = new DefaultFileRegion(file.toFile(), position, Message.MAX_DATA_SIZE);
+        try {
+            while (region.transferred() < region.count()) {
+                region.transferTo(sink, region.transferred());
+            }
+            return region.transferred();
+        } finally {
+            region.release();
+        }
+    }
+
+    private static long read(ChunkedInput<Message> stream) throws Exception {
+        long size = 0;
+        try {
+            while (!stream.isEndOfInput()) {
+                Message part = stream.readChunk(PooledByteBufAllocator.DEFAULT);
+                size += part.data().readableBytes();
+                part.release();
+            }
+        } finally {
+            stream.close();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (blockCache != null) {
+            blockCache.invalidate(file);
+        }
+        sink.close();
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,36 @@
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+public class ChunkWriteWorkload implements benchmarks.Workload {
+    private final Path file;
+    private final FileChannel fileChannel;
+    private final ByteBuf data;
+    private final long chunksNum;
+    private long chunk;
+
+    public ChunkWriteWorkload(Map<String, String> params) throws IOException {
+        file = Files.createTempFile("netstorage-export", ".bin");
+        fileChannel = FileChannel.open(file, StandardOpenOption.WRITE);
+        data = Payloads.generate("random", Message.MAX_DATA_SIZE);
+        chunksNum = Math.max(1, Long.parseLong(params.get("fileSize")) / Message.MAX_DATA_SIZE);
+    }
+
+    @Override
+    public Object run() throws IOException {
+        ServerHandler.writeData(fileChannel, chunk++ % chunksNum * Message.MAX_DATA_SIZE, data);
+        return data.readableBytes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.release();
+        fileChannel.close();
+        Files.delete(file);
+    }
+}
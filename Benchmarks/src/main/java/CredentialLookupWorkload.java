@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class CredentialLookupWorkload implements benchmarks.Workload {
+    private static final String CREATE_TABLE = "CREATE TABLE LogPass (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "Login STRING (31) UNIQUE NOT NULL, Password STRING (31) NOT NULL);";
+    private static final int DB_READERS_NUM = 4;
+
+    private final Path database;
+    private final CredentialStore credentialStore;
+    private final int usersNum;
+
+    public CredentialLookupWorkload(Map<String, String> params) throws IOException, SQLException {
+        usersNum = Integer.parseInt(params.get("usersNum"));
+        database = params.containsKey("database") ? copyDatabase(Path.of(params.get("database"))) : createDatabase();
+        credentialStore = new CredentialStore("jdbc:sqlite:" + database, DB_READERS_NUM, Integer.parseInt(params.get("cacheSize")));
+        for (int i = 0; i < usersNum; i++) {
+            credentialStore.addUser("user" + i, "password" + i);
+        }
+        credentialStore.addUser("user" + usersNum, "password" + usersNum).join();
+    }
+
+    public static Path createDatabase() throws IOException, SQLException {
+        Path database = Files.createTempFile("netstorage-credentials", ".db");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+        }
+        return database;
+    }
+
+    public static Path copyDatabase(Path source) throws IOException {
+        Path database = Files.createTempFile("netstorage-credentials", ".db");
+        Files.copy(source, database, StandardCopyOption.REPLACE_EXISTING);
+        return database;
+    }
+
+    public static void deleteDatabase(Path database) throws IOException {
+        Files.deleteIfExists(database);
+        Files.deleteIfExists(Path.of(database + "-wal"));
+        Files.deleteIfExists(Path.of(database + "-shm"));
+    }
+
+    @Override
+    public Object run() {
+        return credentialStore.findPassword("user" + ThreadLocalRandom.current().nextInt(usersNum)).join();
+    }
+
+    @Override
+    public void close() throws SQLException, IOException {
+        credentialStore.close();
+        deleteDatabase(database);
+    }
+}
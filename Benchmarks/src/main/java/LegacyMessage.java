@@ -0,0 +1,6 @@
+import java.io.File;
+import java.io.Serializable;
+
+public record LegacyMessage(String command, File file, byte[] data) implements Serializable {
+    public static final int MAX_OBJECT_SIZE = 1024 * 1024;
+}
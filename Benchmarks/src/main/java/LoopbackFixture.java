@@ -0,0 +1,227 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+public class LoopbackFixture implements benchmarks.Fixture {
+    private static final String LOGIN = "benchmark";
+    private static final String PASSWORD = "benchmark";
+    private static final String DOWNLOAD_PATH = "download.bin";
+    private static final String STAT_PATH = "stat.bin";
+    private static final int STAT_FILE_SIZE = 4096;
+
+    private static final int DB_READERS_NUM = 4;
+    private static final int CREDENTIALS_CACHE_SIZE = 1024;
+    private static final int STORAGE_THREADS_NUM = 16;
+    private static final int INDEX_JOURNAL_SIZE = 10000;
+    private static final long CACHE_SIZE = 64L * 1024 * 1024;
+    private static final int UPLOAD_WINDOW = 16;
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run(ServerConnection connection) throws Exception;
+    }
+
+    private record ClientWorkload(ServerConnection connection, Operation operation) implements benchmarks.Workload {
+        @Override
+        public Object run() throws Exception {
+            return operation.run(connection);
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+
+    private final Path rootDir;
+    private final Path database;
+    private final CredentialStore credentialStore;
+    private final StorageExecutor storageExecutor;
+    private final MetadataIndex metadataIndex;
+    private final GroupCommit groupCommit;
+    private final BlockCache blockCache = new BlockCache(CACHE_SIZE);
+
+    private final EventLoopGroup bossGroup = Transport.newEventLoopGroup(1);
+    private final EventLoopGroup workerGroup = Transport.newEventLoopGroup(0);
+    private final EventLoopGroup clientGroup = Transport.newEventLoopGroup(0);
+    private final Channel serverChannel;
+    private final int port;
+
+    private final boolean compression;
+    private final ByteBuf content;
+    private final int contentCrc;
+    private final ServerConnection sessionConnection;
+    private final String sessionToken;
+    private final AtomicLong lastUploadId = new AtomicLong();
+
+    public LoopbackFixture(Map<String, String> params) throws Exception {
+        rootDir = Files.createTempDirectory("netstorage-bench");
+        database = CredentialLookupWorkload.createDatabase();
+
+        credentialStore = new CredentialStore("jdbc:sqlite:" + database, DB_READERS_NUM, CREDENTIALS_CACHE_SIZE);
+        storageExecutor = StorageExecutor.create(STORAGE_THREADS_NUM, false);
+        metadataIndex = new MetadataIndex(rootDir, rootDir.resolve(".index"), null, INDEX_JOURNAL_SIZE, true);
+        groupCommit = Server.newGroupCommit(metadataIndex, Boolean.parseBoolean(params.getOrDefault("fsync", "true")));
+        serverChannel = Server.bind(0, rootDir, bossGroup, workerGroup, credentialStore, storageExecutor, null, metadataIndex, blockCache, groupCommit, null);
+        port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+
+        compression = Boolean.parseBoolean(params.get("compression"));
+        content = Payloads.generate("random", Integer.parseInt(params.get("fileSize")));
+        contentCrc = Checksum.crc(content);
+
+        sessionConnection = new ServerConnection(clientGroup, "localhost", port);
+        enableFeatures(sessionConnection, sessionConnection.request(Message.CONNECT_COMMAND, null, offeredFeatures()));
+        Message response = expectSuccess(sessionConnection.request(Message.REGISTER_COMMAND, LOGIN,
+                Unpooled.copiedBuffer(PASSWORD, StandardCharsets.UTF_8)));
+        try {
+            sessionToken = response.details().toString(StandardCharsets.UTF_8);
+        } finally {
+            response.release();
+        }
+
+        upload(sessionConnection, DOWNLOAD_PATH, content);
+        upload(sessionConnection, STAT_PATH, content.slice(0, Math.min(STAT_FILE_SIZE, content.readableBytes())));
+    }
+
+    @Override
+    public benchmarks.Workload open(String operation) throws Exception {
+        ServerConnection connection = attach();
+        return new ClientWorkload(connection, switch (operation) {
+            case "upload" -> this::upload;
+            case "download" -> this::download;
+            case "stat" -> this::stat;
+            case "statPerConnection" -> this::statPerConnection;
+            default -> {
+                connection.close();
+                throw new IllegalArgumentException("Неизвестная операция: " + operation);
+            }
+        });
+    }
+
+    private ServerConnection attach() throws InterruptedException {
+        ServerConnection connection = new ServerConnection(clientGroup, "localhost", port);
+        ByteBuf data = offeredFeatures();
+        data.writeCharSequence(sessionToken, StandardCharsets.UTF_8);
+        try {
+            enableFeatures(connection, connection.request(Message.ATTACH_COMMAND, null, data));
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private ByteBuf offeredFeatures() {
+        return Unpooled.buffer().writeByte(compression ? CompressionCodec.FEATURE : 0);
+    }
+
+    private static void enableFeatures(ServerConnection connection, CompletableFuture<Message> request) {
+        Message response = expectSuccess(request);
+        try {
+            if (response.details().isReadable() && (response.details().getByte(0) & CompressionCodec.FEATURE) != 0) {
+                connection.enableCompression(Deflater.BEST_SPEED);
+            }
+        } finally {
+            response.release();
+        }
+    }
+
+    private Object upload(ServerConnection connection) throws Exception {
+        String path = "upload-" + lastUploadId.incrementAndGet() + ".bin";
+        upload(connection, path, content);
+        expectSuccess(connection.request(Message.DELETE_COMMAND, path, Unpooled.EMPTY_BUFFER)).release();
+        return content.readableBytes();
+    }
+
+    private static void upload(ServerConnection connection, String path, ByteBuf data) throws InterruptedException, IOException {
+        expectSuccess(connection.request(Message.PUT_COMMAND, path, Unpooled.EMPTY_BUFFER)).release();
+
+        RequestWindow window = new RequestWindow(UPLOAD_WINDOW);
+        for (int pos = 0; pos < data.readableBytes() && !window.isFailed(); pos += Message.MAX_DATA_SIZE) {
+            long offset = pos;
+            ByteBuf slice = data.retainedSlice(data.readerIndex() + pos, Math.min(Message.MAX_DATA_SIZE, data.readableBytes() - pos));
+            ByteBuf part = Unpooled.wrappedBuffer(slice, Unpooled.directBuffer(Checksum.SIZE).writeInt(Checksum.crc(slice)));
+            window.submit(() -> connection.request(Message.EXPORT_COMMAND, path, offset, part, null));
+        }
+        window.await();
+
+        expectSuccess(connection.request(Message.COMMIT_COMMAND, path, Unpooled.EMPTY_BUFFER)).release();
+    }
+
+    private Object download(ServerConnection connection) {
+        long[] received = {0};
+        CRC32C crc = new CRC32C();
+        expectSuccess(connection.request(Message.IMPORT_COMMAND, DOWNLOAD_PATH, 0, Unpooled.EMPTY_BUFFER, part -> {
+            Checksum.update(crc, part.data());
+            received[0] += part.data().readableBytes();
+        })).release();
+        if ((int) crc.getValue() != contentCrc) {
+            throw new IllegalStateException("Контрольная сумма загруженного файла не совпала");
+        }
+        return received[0];
+    }
+
+    private Object stat(ServerConnection connection) {
+        Message response = expectSuccess(connection.request(Message.STAT_COMMAND, STAT_PATH, Unpooled.EMPTY_BUFFER));
+        try {
+            return response.details().getLong(0);
+        } finally {
+            response.release();
+        }
+    }
+
+    private Object statPerConnection(ServerConnection connection) throws InterruptedException {
+        ServerConnection requestConnection = attach();
+        try {
+            return stat(requestConnection);
+        } finally {
+            requestConnection.close();
+        }
+    }
+
+    private static Message expectSuccess(CompletableFuture<Message> request) {
+        Message response = request.join();
+        if (response.code() != Message.SUCCESS_CODE) {
+            response.release();
+            throw new IllegalStateException("Сервер отклонил запрос");
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException, SQLException {
+        sessionConnection.close();
+        serverChannel.close().syncUninterruptibly();
+        bossGroup.shutdownGracefully().syncUninterruptibly();
+        workerGroup.shutdownGracefully().syncUninterruptibly();
+        clientGroup.shutdownGracefully().syncUninterruptibly();
+
+        storageExecutor.close();
+        groupCommit.close();
+        metadataIndex.close();
+        credentialStore.close();
+        content.release();
+
+        CredentialLookupWorkload.deleteDatabase(database);
+        try (Stream<Path> paths = Files.walk(rootDir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
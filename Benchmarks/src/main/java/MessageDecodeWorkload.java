@@ -0,0 +1,69 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+public class MessageDecodeWorkload implements benchmarks.Workload {
+    private static final String PATH = "benchmark/data.bin";
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    private final ChannelHandlerContext ctx = channel.pipeline().firstContext();
+    private final MessageDecoder decoder = new MessageDecoder(Message.MAX_OBJECT_SIZE);
+    private final CompressionCodec compressionCodec;
+    private final ByteBuf frame;
+    private final List<Object> out = new ArrayList<>();
+
+    public MessageDecodeWorkload(Map<String, String> params) {
+        compressionCodec = Boolean.parseBoolean(params.get("compression"))
+                ? new CompressionCodec(Message.MAX_OBJECT_SIZE, Deflater.BEST_SPEED) : null;
+
+        ByteBuf data = Payloads.generate(params.get("payload"), Integer.parseInt(params.get("payloadSize")));
+        Message msg = new Message(1, Message.EXPORT_COMMAND, PATH, 0, data);
+        if (compressionCodec != null) {
+            compressionCodec.encode(ctx, msg, out);
+            msg.release();
+            msg = (Message) out.remove(0);
+        }
+        new MessageEncoder().encode(ctx, msg, out);
+        msg.release();
+
+        frame = Unpooled.directBuffer();
+        for (Object buf : out) {
+            frame.writeBytes((ByteBuf) buf);
+            ((ByteBuf) buf).release();
+        }
+        out.clear();
+    }
+
+    @Override
+    public Object run() throws Exception {
+        ByteBuf in = frame.retainedDuplicate();
+        Message msg;
+        try {
+            msg = (Message) decoder.decode(ctx, in);
+        } finally {
+            in.release();
+        }
+        if (compressionCodec != null) {
+            compressionCodec.decode(ctx, msg, out);
+            msg.release();
+            msg = (Message) out.remove(0);
+        }
+
+        int size = msg.data().readableBytes();
+        msg.release();
+        return size;
+    }
+
+    @Override
+    public void close() {
+        frame.release();
+        channel.finishAndReleaseAll();
+    }
+}
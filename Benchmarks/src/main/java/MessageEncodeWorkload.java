@@ -0,0 +1,54 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+public class MessageEncodeWorkload implements benchmarks.Workload {
+    private static final String PATH = "benchmark/data.bin";
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    private final ChannelHandlerContext ctx = channel.pipeline().firstContext();
+    private final MessageEncoder encoder = new MessageEncoder();
+    private final CompressionCodec compressionCodec;
+    private final ByteBuf data;
+    private final List<Object> out = new ArrayList<>();
+    private long id;
+
+    public MessageEncodeWorkload(Map<String, String> params) {
+        data = Payloads.generate(params.get("payload"), Integer.parseInt(params.get("payloadSize")));
+        compressionCodec = Boolean.parseBoolean(params.get("compression"))
+                ? new CompressionCodec(Message.MAX_OBJECT_SIZE, Deflater.BEST_SPEED) : null;
+    }
+
+    @Override
+    public Object run() {
+        Message msg = new Message(++id, Message.EXPORT_COMMAND, PATH, id * data.readableBytes(), data.retainedDuplicate());
+        if (compressionCodec != null) {
+            compressionCodec.encode(ctx, msg, out);
+            msg.release();
+            msg = (Message) out.remove(0);
+        }
+        encoder.encode(ctx, msg, out);
+        msg.release();
+
+        long size = 0;
+        for (Object buf : out) {
+            size += ((ByteBuf) buf).readableBytes();
+            ReferenceCountUtil.release(buf);
+        }
+        out.clear();
+        return size;
+    }
+
+    @Override
+    public void close() {
+        data.release();
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,42 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.codec.serialization.ObjectDecoder;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+
+import java.io.File;
+import java.util.Map;
+
+@SuppressWarnings("deprecation")
+public class ObjectDecodeWorkload implements benchmarks.Workload {
+    private static final File FILE = new File("benchmark/data.bin");
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(
+            new ObjectDecoder(LegacyMessage.MAX_OBJECT_SIZE, ClassResolvers.cacheDisabled(null)));
+    private final ByteBuf frame;
+
+    public ObjectDecodeWorkload(Map<String, String> params) {
+        ByteBuf payload = Payloads.generate(params.get("payload"), Integer.parseInt(params.get("payloadSize")));
+        byte[] data = new byte[payload.readableBytes()];
+        payload.readBytes(data);
+        payload.release();
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new ObjectEncoder());
+        encoder.writeOutbound(new LegacyMessage(Message.EXPORT_COMMAND, FILE, data));
+        frame = encoder.readOutbound();
+        encoder.finishAndReleaseAll();
+    }
+
+    @Override
+    public Object run() {
+        channel.writeInbound(frame.retainedDuplicate());
+        LegacyMessage msg = channel.readInbound();
+        return msg.data().length;
+    }
+
+    @Override
+    public void close() {
+        frame.release();
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,35 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+
+import java.io.File;
+import java.util.Map;
+
+@SuppressWarnings("deprecation")
+public class ObjectEncodeWorkload implements benchmarks.Workload {
+    private static final File FILE = new File("benchmark/data.bin");
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ObjectEncoder());
+    private final byte[] data;
+
+    public ObjectEncodeWorkload(Map<String, String> params) {
+        ByteBuf payload = Payloads.generate(params.get("payload"), Integer.parseInt(params.get("payloadSize")));
+        data = new byte[payload.readableBytes()];
+        payload.readBytes(data);
+        payload.release();
+    }
+
+    @Override
+    public Object run() {
+        channel.writeOutbound(new LegacyMessage(Message.EXPORT_COMMAND, FILE, data));
+        ByteBuf frame = channel.readOutbound();
+        int size = frame.readableBytes();
+        frame.release();
+        return size;
+    }
+
+    @Override
+    public void close() {
+        channel.finishAndReleaseAll();
+    }
+}
@@ -0,0 +1,30 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class Payloads {
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "storage", "netty", "chunk", "server"};
+
+    public static ByteBuf generate(String kind, int size) {
+        Random random = new Random(size);
+        ByteBuf payload = Unpooled.directBuffer(size, size);
+        switch (kind) {
+            case "random" -> {
+                byte[] bytes = new byte[size];
+                random.nextBytes(bytes);
+                payload.writeBytes(bytes);
+            }
+            case "text" -> {
+                for (int line = 0; payload.isWritable(); line++) {
+                    byte[] bytes = (line + "," + WORDS[random.nextInt(WORDS.length)] + "," + random.nextInt(100000) + "\n")
+                            .getBytes(StandardCharsets.UTF_8);
+                    payload.writeBytes(bytes, 0, Math.min(bytes.length, payload.writableBytes()));
+                }
+            }
+            default -> throw new IllegalArgumentException("Неизвестный тип данных: " + kind);
+        }
+        return payload;
+    }
+}
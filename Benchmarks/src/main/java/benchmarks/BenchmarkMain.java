@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class BenchmarkMain {
+    private static final Path RESULTS_DIR = Path.of(System.getProperty("netstorage.bench.results", "bench-results"));
+    private static final String MICRO_BENCHMARKS = System.getProperty("netstorage.bench.micro",
+            "benchmarks\\.(Codec|ObjectCodec|Storage|Credential)Benchmark");
+    private static final String MACRO_BENCHMARKS = System.getProperty("netstorage.bench.macro",
+            "benchmarks\\.(Transfer|Commit)Benchmark");
+    private static final String LATENCY_BENCHMARKS = System.getProperty("netstorage.bench.latency",
+            "benchmarks\\.LatencyBenchmark");
+    private static final String CONCURRENCY_LEVELS = System.getProperty("netstorage.bench.threads", "1,4,16");
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        Files.createDirectories(RESULTS_DIR);
+
+        if (!MICRO_BENCHMARKS.isEmpty()) {
+            new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .include(MICRO_BENCHMARKS)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(RESULTS_DIR.resolve("micro.json").toString())
+                    .build()).run();
+        }
+
+        if (!MACRO_BENCHMARKS.isEmpty()) {
+            for (String level : CONCURRENCY_LEVELS.split(",")) {
+                int threads = Integer.parseInt(level.trim());
+                new Runner(new OptionsBuilder()
+                        .parent(options)
+                        .include(MACRO_BENCHMARKS)
+                        .threads(threads)
+                        .resultFormat(ResultFormatType.JSON)
+                        .result(RESULTS_DIR.resolve("transfer-" + threads + "t.json").toString())
+                        .build()).run();
+            }
+        }
+
+        if (!LATENCY_BENCHMARKS.isEmpty()) {
+            new Runner(new OptionsBuilder()
+                    .parent(options)
+                    .include(LATENCY_BENCHMARKS)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(RESULTS_DIR.resolve("latency.json").toString())
+                    .build()).run();
+        }
+    }
+}
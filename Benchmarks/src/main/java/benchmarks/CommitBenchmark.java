@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CommitBenchmark {
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({"4096", "1048576"})
+        public long fileSize;
+
+        @Param({"false", "true"})
+        public boolean fsync;
+
+        private Fixture fixture;
+
+        @Setup
+        public void setUp() throws Exception {
+            fixture = Workloads.create("LoopbackFixture", Map.of(
+                    "fileSize", String.valueOf(fileSize),
+                    "compression", "false",
+                    "fsync", String.valueOf(fsync)));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+        private Workload workload;
+
+        @Setup
+        public void setUp(ServerState server) throws Exception {
+            workload = server.fixture.open("upload");
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            workload.close();
+        }
+    }
+
+    @Benchmark
+    public Object upload(ClientState client) throws Exception {
+        return client.workload.run();
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CredentialBenchmark {
+    @Param({"10000"})
+    public int usersNum;
+
+    @Param({"0", "1024", "16384"})
+    public int cacheSize;
+
+    @Param({"DataBase.db"})
+    public String database;
+
+    private Workload lookup;
+
+    @Setup
+    public void setUp() throws Exception {
+        lookup = Workloads.create("CredentialLookupWorkload",
+                Map.of("usersNum", String.valueOf(usersNum), "cacheSize", String.valueOf(cacheSize), "database", database));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        lookup.close();
+    }
+
+    @Benchmark
+    public Object findPassword() throws Exception {
+        return lookup.run();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object concurrentLogin() throws Exception {
+        return lookup.run();
+    }
+}
@@ -0,0 +1,11 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+public interface Fixture extends AutoCloseable {
+    Workload open(String operation) throws Exception;
+
+    @Override
+    void close() throws IOException, SQLException;
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LatencyBenchmark {
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({"16777216"})
+        public long fileSize;
+
+        private Fixture fixture;
+
+        @Setup
+        public void setUp() throws Exception {
+            fixture = Workloads.create("LoopbackFixture", Map.of(
+                    "fileSize", String.valueOf(fileSize),
+                    "compression", "false"));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SmallState {
+        private Workload workload;
+
+        @Setup
+        public void setUp(ServerState server) throws Exception {
+            workload = server.fixture.open("stat");
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            workload.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LargeState {
+        private Workload workload;
+
+        @Setup
+        public void setUp(ServerState server) throws Exception {
+            workload = server.fixture.open("upload");
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            workload.close();
+        }
+    }
+
+    @Benchmark
+    @Group("idle")
+    @GroupThreads(4)
+    public Object idleSmall(SmallState small) throws Exception {
+        return small.workload.run();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public Object mixedSmall(SmallState small) throws Exception {
+        return small.workload.run();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public Object mixedLarge(LargeState large) throws Exception {
+        return large.workload.run();
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectCodecBenchmark {
+    @Param({"0", "4096", "1046528"})
+    public int payloadSize;
+
+    @Param({"text", "random"})
+    public String payload;
+
+    private Workload encode;
+    private Workload decode;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, String> params = Map.of(
+                "payloadSize", String.valueOf(payloadSize),
+                "payload", payload);
+        encode = Workloads.create("ObjectEncodeWorkload", params);
+        decode = Workloads.create("ObjectDecodeWorkload", params);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        encode.close();
+        decode.close();
+    }
+
+    @Benchmark
+    public Object encode() throws Exception {
+        return encode.run();
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        return decode.run();
+    }
+}
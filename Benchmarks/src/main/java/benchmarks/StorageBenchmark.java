@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StorageBenchmark {
+    @Param({"67108864"})
+    public long fileSize;
+
+    @Param({"region", "chunked", "cached"})
+    public String readMode;
+
+    private Workload write;
+    private Workload read;
+
+    @Setup
+    public void setUp() throws Exception {
+        write = Workloads.create("ChunkWriteWorkload", Map.of("fileSize", String.valueOf(fileSize)));
+        read = Workloads.create("ChunkReadWorkload", Map.of("fileSize", String.valueOf(fileSize), "mode", readMode));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        write.close();
+        read.close();
+    }
+
+    @Benchmark
+    public Object exportChunk() throws Exception {
+        return write.run();
+    }
+
+    @Benchmark
+    public Object importChunk() throws Exception {
+        return read.run();
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferBenchmark {
+    @State(Scope.Benchmark)
+    public static class ServerState {
+        @Param({"16777216"})
+        public long fileSize;
+
+        @Param({"false", "true"})
+        public boolean compression;
+
+        private Fixture fixture;
+
+        @Setup
+        public void setUp() throws Exception {
+            fixture = Workloads.create("LoopbackFixture", Map.of(
+                    "fileSize", String.valueOf(fileSize),
+                    "compression", String.valueOf(compression)));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+        private Workload workload;
+
+        @Setup
+        public void setUp(ServerState server, BenchmarkParams params) throws Exception {
+            String benchmark = params.getBenchmark();
+            workload = server.fixture.open(benchmark.substring(benchmark.lastIndexOf('.') + 1));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            workload.close();
+        }
+    }
+
+    @Benchmark
+    public Object upload(ClientState client) throws Exception {
+        return client.workload.run();
+    }
+
+    @Benchmark
+    public Object download(ClientState client) throws Exception {
+        return client.workload.run();
+    }
+
+    @Benchmark
+    public Object stat(ClientState client) throws Exception {
+        return client.workload.run();
+    }
+
+    @Benchmark
+    public Object statPerConnection(ClientState client) throws Exception {
+        return client.workload.run();
+    }
+}
@@ -0,0 +1,12 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+public interface Workload extends AutoCloseable {
+    Object run() throws Exception;
+
+    @Override
+    default void close() throws IOException, SQLException {
+    }
+}
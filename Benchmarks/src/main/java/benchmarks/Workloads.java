@@ -0,0 +1,15 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+public class Workloads {
+    @SuppressWarnings("unchecked")
+    public static <T extends AutoCloseable> T create(String className, Map<String, String> params) throws Exception {
+        try {
+            return (T) Class.forName(className).getConstructor(Map.class).newInstance(params);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+}
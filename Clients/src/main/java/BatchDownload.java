@@ -0,0 +1,78 @@
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BatchDownload implements AutoCloseable {
+    private final Path rootDir;
+
+    private String currentName;
+    private FileChannel currentChannel;
+
+    private int receivedNum;
+    private int skippedNum;
+
+    public BatchDownload(Path rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public void accept(Message part) throws IOException {
+        ByteBuf entries = part.data();
+        while (entries.isReadable()) {
+            String name = entries.readCharSequence((int) MessageDecoder.readVarLong(entries), StandardCharsets.UTF_8).toString();
+            MessageDecoder.readVarLong(entries);
+            long offset = MessageDecoder.readVarLong(entries);
+            ByteBuf data = entries.readSlice((int) MessageDecoder.readVarLong(entries));
+            if (Checksum.crc(data) != entries.readInt()) {
+                throw new IOException("Данные файла " + name + " повреждены при передаче");
+            }
+
+            if (!name.equals(currentName)) {
+                open(name);
+            }
+            if (currentChannel != null) {
+                while (data.isReadable()) {
+                    offset += data.readBytes(currentChannel, offset, data.readableBytes());
+                }
+            }
+        }
+    }
+
+    private void open(String name) throws IOException {
+        close();
+        currentName = name;
+
+        Path path = rootDir.resolve(name).normalize();
+        if (!path.startsWith(rootDir)) {
+            throw new IOException("Сервер прислал некорректный путь " + name);
+        }
+        if (Files.exists(path)) {
+            skippedNum++;
+            return;
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        currentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        receivedNum++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (currentChannel != null) {
+            currentChannel.close();
+            currentChannel = null;
+        }
+    }
+
+    public int receivedNum() {
+        return receivedNum;
+    }
+
+    public int skippedNum() {
+        return skippedNum;
+    }
+}
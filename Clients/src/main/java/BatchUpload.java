@@ -0,0 +1,84 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchUpload {
+    private static final int ENTRY_HEADER_SIZE = 2 * 10 + Checksum.SIZE;
+
+    private final ServerConnection connection;
+    private final RequestWindow window;
+
+    private ByteBuf frame = Unpooled.buffer();
+    private List<String> names = new ArrayList<>();
+
+    private final AtomicInteger storedNum = new AtomicInteger();
+    private final Queue<String> failedFiles = new ConcurrentLinkedQueue<>();
+
+    public BatchUpload(ServerConnection connection, int windowSize) {
+        this.connection = connection;
+        this.window = new RequestWindow(windowSize);
+    }
+
+    public void add(String name, Path file) throws IOException, InterruptedException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] content = Files.readAllBytes(file);
+        if (frame.readableBytes() + nameBytes.length + content.length + ENTRY_HEADER_SIZE > Message.MAX_DATA_SIZE) {
+            flush();
+        }
+
+        MessageEncoder.writeVarLong(frame, nameBytes.length);
+        frame.writeBytes(nameBytes);
+        MessageEncoder.writeVarLong(frame, content.length);
+        frame.writeBytes(content);
+        frame.writeInt(Checksum.crc(Unpooled.wrappedBuffer(content)));
+        names.add(name);
+    }
+
+    public void finish() throws IOException, InterruptedException {
+        flush();
+        window.await();
+    }
+
+    private void flush() throws IOException, InterruptedException {
+        if (names.isEmpty()) {
+            return;
+        }
+        if (window.isFailed()) {
+            throw new IOException("Ошибка при обмене данными с сервером");
+        }
+
+        ByteBuf data = frame;
+        List<String> sentNames = names;
+        frame = Unpooled.buffer();
+        names = new ArrayList<>();
+
+        window.submit(() -> connection.request(Message.PUT_BATCH_COMMAND, null, data).thenApply(response -> {
+            ByteBuf statuses = response.details();
+            for (String name : sentNames) {
+                if (statuses.isReadable() && statuses.readByte() == Message.SUCCESS_CODE) {
+                    storedNum.incrementAndGet();
+                } else {
+                    failedFiles.add(name);
+                }
+            }
+            return response;
+        }));
+    }
+
+    public int storedNum() {
+        return storedNum.get();
+    }
+
+    public Queue<String> failedFiles() {
+        return failedFiles;
+    }
+}
@@ -1,36 +1,33 @@
-import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.EventLoopGroup;
 
 import java.io.*;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
 
 public class Client {
-    private static final Scanner scanner = new Scanner(System.in);
-    private static final EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private static final String HOST = System.getProperty("netstorage.host", "localhost");
+    private static final int PORT = Integer.getInteger("netstorage.port", Message.SERVER_PORT);
+    private static final String ROOT_PATH = ".";
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
 
-    private static DataInputStream inputStream;
-    private static OutputStream outputStream;
-    private static DataOutput dataOutputStream;
+    private static final Scanner scanner = new Scanner(System.in);
+    private static final EventLoopGroup workerGroup = Transport.newEventLoopGroup(0);
 
     private static Path rootDir;
+    private static StorageClient storageClient;
 
     public static void main(String[] args) throws IOException, InterruptedException {
         final String EXIT_COMMAND = "-1";
 
-        Socket socket = new Socket("localhost", Server.CONNECTION_PORT);
-        inputStream = new DataInputStream(socket.getInputStream());
-        outputStream = socket.getOutputStream();
-        dataOutputStream = new DataOutputStream(outputStream);
+        storageClient = new StorageClient(workerGroup, HOST, PORT);
 
         connect();
         authorize();
@@ -39,6 +36,14 @@ public class Client {
                     Message.PUT_COMMAND + " - если хотите отправить копию файла на сервер\n" +
                     Message.GET_COMMAND + " - если хотите получить файл с сервера\n" +
                     Message.DELETE_COMMAND + " - если хотите удалить файл с сервера\n" +
+                    Message.UPDATE_COMMAND + " - если хотите обновить файл на сервере\n" +
+                    Message.LIST_COMMAND + " - если хотите просмотреть содержимое папки на сервере (" + ROOT_PATH + " - корневая папка)\n" +
+                    Message.STAT_COMMAND + " - если хотите узнать размер, время изменения и хеш файла на сервере\n" +
+                    Message.PUT_BATCH_COMMAND + " - если хотите отправить на сервер все файлы папки\n" +
+                    Message.GET_BATCH_COMMAND + " - если хотите получить с сервера все файлы папки\n" +
+                    Message.DELETE_BATCH_COMMAND + " - если хотите удалить с сервера файлы по шаблону (например, logs/*.txt)\n" +
+                    Message.SYNC_COMMAND + " - если хотите синхронизировать свою папку с сервером (без пути)\n" +
+                    Message.STATS_COMMAND + " - если хотите просмотреть статистику работы сервера (без пути)\n" +
                     "и путь к нужному файлу\n" +
                     "Если хотите завершить работу, введите " + EXIT_COMMAND);
 
@@ -46,6 +51,14 @@ public class Client {
                 case Message.PUT_COMMAND -> putCase();
                 case Message.GET_COMMAND -> getCase();
                 case Message.DELETE_COMMAND -> deleteCase();
+                case Message.UPDATE_COMMAND -> updateCase();
+                case Message.LIST_COMMAND -> listCase();
+                case Message.STAT_COMMAND -> statCase();
+                case Message.PUT_BATCH_COMMAND -> putBatchCase();
+                case Message.GET_BATCH_COMMAND -> getBatchCase();
+                case Message.DELETE_BATCH_COMMAND -> deleteBatchCase();
+                case Message.SYNC_COMMAND -> syncCase();
+                case Message.STATS_COMMAND -> statsCase();
                 case EXIT_COMMAND -> {
                     disconnect();
 
@@ -58,18 +71,19 @@ public class Client {
     }
 
     private static void connect() throws IOException {
-        int connectionStatus = inputStream.readInt();
-        if (connectionStatus != Server.SUCCESS_CODE) {
-            System.out.println("Достигнут лимит пользователей на сервере\nПожалуйста, ожидайте...\n");
+        boolean[] isWaiting = {false};
+        storageClient.connect(position -> {
+            if (!isWaiting[0]) {
+                isWaiting[0] = true;
+                System.out.println("Достигнут лимит пользователей на сервере\nПожалуйста, ожидайте...\n");
+            }
+            System.out.println("Ваше место в очереди: " + position);
+        });
 
-            do {
-                System.out.println("Ваше место в очереди: " + connectionStatus);
-            } while ((connectionStatus = inputStream.readInt()) != Server.SUCCESS_CODE);
-        }
         System.out.println("Вы подключены\n");
     }
 
-    private static void authorize() throws IOException {
+    private static void authorize() throws IOException, InterruptedException {
         final String AUTH_COMMAND = "A";
         final String REG_COMMAND = "R";
 
@@ -79,12 +93,10 @@ public class Client {
                     REG_COMMAND + " - если для входа в систему Вам надо зарегистрироваться");
             switch (scanner.next()) {
                 case AUTH_COMMAND -> {
-                    dataOutputStream.writeInt(Server.SUCCESS_CODE);
                     authenticate();
                     return;
                 }
                 case REG_COMMAND -> {
-                    dataOutputStream.writeInt(Server.FAILURE_CODE);
                     register();
                     return;
                 }
@@ -93,53 +105,50 @@ public class Client {
         }
     }
 
-    private static void authenticate() throws IOException {
+    private static void authenticate() throws IOException, InterruptedException {
         while (true) {
             System.out.println("Введите свой логин");
             String login = scanner.next();
-            writeStringIntoStream(login);
-
-            switch (inputStream.readInt()) {
-                case Server.FAILURE_CODE -> System.out.println("Пользователь с таким логином не зарегистрирован\n");
-                case Server.SUCCESS_CODE -> {
-                    while (true) {
-                        System.out.println("Введите пароль");
-                        writeStringIntoStream(scanner.next());
-
-                        switch (inputStream.readInt()) {
-                            case Server.FAILURE_CODE -> System.out.println("Неверный пароль\n");
-                            case Server.SUCCESS_CODE -> {
-                                initRootDir(login);
-
-                                System.out.println("Аутентификация пройдена\n");
-                                return;
-                            }
-                        }
-                    }
+
+            if (!storageClient.userExists(login)) {
+                System.out.println("Пользователь с таким логином не зарегистрирован\n");
+                continue;
+            }
+            while (true) {
+                System.out.println("Введите пароль");
+
+                if (!storageClient.login(login, scanner.next())) {
+                    System.out.println("Неверный пароль\n");
+                    continue;
                 }
+                initRootDir(login);
+
+                System.out.println("Аутентификация пройдена\n");
+                return;
             }
         }
     }
 
-    private static void register() throws IOException {
+    private static void register() throws IOException, InterruptedException {
         while (true) {
             System.out.println("Установите логин");
             String login = scanner.next();
-            writeStringIntoStream(login);
 
-            switch (inputStream.readInt()) {
-                case Server.FAILURE_CODE -> System.out.println("Пользователь с таким логином уже зарегистрирован\n");
-                case Server.SUCCESS_CODE -> {
-                    System.out.println("Установите пароль");
-                    writeStringIntoStream(scanner.next());
+            if (storageClient.userExists(login)) {
+                System.out.println("Пользователь с таким логином уже зарегистрирован\n");
+                continue;
+            }
+            System.out.println("Установите пароль");
+            if (!storageClient.register(login, scanner.next())) {
+                System.out.println("Пользователь с таким логином уже зарегистрирован\n");
+                continue;
+            }
 
-                    initRootDir(login);
-                    Files.createDirectories(rootDir);
+            initRootDir(login);
+            Files.createDirectories(rootDir);
 
-                    System.out.println("Вы зарегистрированы\n");
-                    return;
-                }
-            }
+            System.out.println("Вы зарегистрированы\n");
+            return;
         }
     }
 
@@ -151,103 +160,173 @@ public class Client {
         );
     }
 
-    private static void writeStringIntoStream(String string) throws IOException {
-        dataOutputStream.writeInt(string.length());
-        outputStream.write(string.getBytes(StandardCharsets.UTF_8));
-    }
-
-    private static void putCase() throws InterruptedException, IOException {
+    private static void putCase() throws IOException, InterruptedException {
         File file = new File(rootDir + "/" + scanner.next());
         if (!file.exists()) {
             System.out.println("Некорректный путь к файлу\n");
-        } else if (!requestIsGranted(new Message(Message.PUT_COMMAND, file, new byte[]{}))) {
+            return;
+        }
+
+        System.out.println("Идёт обмен данными с сервером...");
+        StorageClient.PutResult result = storageClient.put(file.toPath(), remotePath(file));
+        if (!result.isCreated()) {
             System.out.println("Файл с таким именем уже существует на сервере\n");
+        } else if (storageClient.isChunkStoreAvailable()) {
+            System.out.println("Файл успешно создан (передано частей: " + result.sentParts() + " из " + result.partsNum() + ")\n");
         } else {
-            exportFile(file);
+            System.out.println("Файл успешно создан\n");
         }
     }
 
-    private static void exportFile(File file) throws IOException, InterruptedException {
-        FileInputStream inputStream = new FileInputStream(file);
+    private static void getCase() throws IOException, InterruptedException {
+        File file = new File(rootDir + "/" + scanner.next());
+        if (file.exists() && !RangedDownload.isInterrupted(file.toPath())) {
+            System.out.println("Файл с таким именем уже есть на устройстве\n");
+            return;
+        }
 
-        long size = file.length();
-        for (long pos = 0; pos < size; pos += Server.MAX_DATA_SIZE) {
-            inputStream.getChannel().position(pos);
-            byte[] data = new byte[(int) Math.min(Server.MAX_DATA_SIZE, size - pos)];
-            if (inputStream.read(data) == -1) {
-                throw new RuntimeException("Ошибка при считывании данных из файла " + file);
-            } else {
-                requestIsGranted(new Message(Message.EXPORT_COMMAND, file, data));
-            }
+        System.out.println("Идёт обмен данными с сервером...");
+        StorageClient.FileStat stat = storageClient.stat(remotePath(file));
+        if (stat == null) {
+            System.out.println("Файла по указанному пути не существует\n");
+            return;
         }
-        System.out.println("Файл успешно создан\n");
+
+        storageClient.get(remotePath(file), file.toPath(), stat);
+        System.out.println("Файл успешно скопирован\n");
     }
 
-    private static void getCase() throws InterruptedException, IOException {
+    private static void updateCase() throws IOException, InterruptedException {
         File file = new File(rootDir + "/" + scanner.next());
-        if (file.exists()) {
-            System.out.println("Файл с таким именем уже есть на устройстве\n");
-        } else if (!requestIsGranted(new Message(Message.GET_COMMAND, file, null))) {
-            System.out.println("Файла по указанному пути не существует\n");
-        } else {
-            importFile(file);
+        if (!file.isFile()) {
+            System.out.println("Некорректный путь к файлу\n");
+            return;
+        }
+
+        StorageClient.UpdateResult result = storageClient.update(file.toPath(), remotePath(file));
+        switch (result.status()) {
+            case NOT_FOUND -> System.out.println("Файла по указанному пути не существует\n");
+            case BUSY -> System.out.println("Файл на сервере сейчас изменяется\n");
+            case UPDATED -> System.out.println("Файл успешно обновлён (передано байт: " + result.sentBytes() + " из " + file.length() + ")\n");
         }
     }
 
-    private static void importFile(File file) throws IOException, InterruptedException {
-        Path path = file.toPath();
-        try {
-            if (!file.createNewFile()) {
-                throw new RuntimeException("Ошибка при создании файла " + path);
-            }
-        } catch (IOException e) {
-            Files.createDirectories(path.getParent());
-            if (!file.createNewFile()) {
-                throw new RuntimeException("Ошибка при создании файла " + path);
-            }
+    private static void listCase() {
+        String dir = scanner.next();
+        List<StorageClient.Entry> entries = storageClient.list(dir.equals(ROOT_PATH) ? null : dir);
+        if (entries == null) {
+            System.out.println("Некорректный путь к папке\n");
+            return;
         }
 
-        long curFileSize = 0;
-        while (requestIsGranted(new Message(Message.IMPORT_COMMAND, file, String.valueOf(curFileSize).getBytes(StandardCharsets.UTF_8)))) {
-            curFileSize += Server.MAX_DATA_SIZE;
+        for (StorageClient.Entry entry : entries) {
+            System.out.println(entry.isDirectory() ? entry.name() + "/"
+                    : entry.name() + "  " + entry.size() + " байт  " + TIME_FORMATTER.format(Instant.ofEpochMilli(entry.modified())));
         }
-        System.out.println("Файл успешно скопирован\n");
+        System.out.println(entries.isEmpty() ? "Папка пуста\n" : "Всего: " + entries.size() + "\n");
     }
 
-    private static void deleteCase() throws InterruptedException {
-        if (!requestIsGranted(new Message(Message.DELETE_COMMAND, new File(rootDir + "/" + scanner.next()), null))) {
+    private static void statCase() {
+        StorageClient.FileStat stat = storageClient.stat(scanner.next());
+        if (stat == null) {
             System.out.println("Файла по указанному пути не существует\n");
-        } else {
-            System.out.println("Файл успешно удалён\n");
+            return;
         }
+
+        System.out.println("Размер: " + stat.size() + " байт\n" +
+                "Изменён: " + TIME_FORMATTER.format(Instant.ofEpochMilli(stat.modified())) + "\n" +
+                "CRC32C: " + String.format("%08x", stat.crc()) + "\n" +
+                "SHA-256: " + ByteBufUtil.hexDump(stat.hash()) + "\n");
     }
 
-    private static boolean requestIsGranted(Message request) throws InterruptedException {
-        int[] executionCode = new int[1];
+    private static void statsCase() {
+        Map<String, Long> values = storageClient.stats();
+        if (values == null) {
+            System.out.println("Не удалось получить статистику сервера\n");
+            return;
+        }
 
-        Bootstrap sender = new Bootstrap();
-        sender.group(workerGroup);
-        sender.channel(NioSocketChannel.class);
-        sender.option(ChannelOption.SO_KEEPALIVE, true);
-        sender.handler(new ChannelInitializer<>() {
-            @Override
-            protected void initChannel(Channel ch) {
-                ch.pipeline().addLast(
-                        new ObjectEncoder(),
-                        new ObjectDecoder(Server.MAX_OBJECT_SIZE, ClassResolvers.cacheDisabled(null)),
-                        new ClientHandler(request, ((code) -> executionCode[0] = code))
-                );
-            }
-        });
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            System.out.println(value.getKey() + ": " + value.getValue());
+        }
+        System.out.println();
+    }
 
-        ChannelFuture future = sender.connect("localhost", Server.SERVER_PORT).sync();
-        future.channel().closeFuture().sync();
+    private static void putBatchCase() throws IOException, InterruptedException {
+        String dir = scanner.next();
+        Path localDir = dir.equals(ROOT_PATH) ? rootDir : rootDir.resolve(dir).normalize();
+        if (!localDir.startsWith(rootDir) || !Files.isDirectory(localDir)) {
+            System.out.println("Некорректный путь к папке\n");
+            return;
+        }
+
+        System.out.println("Идёт обмен данными с сервером...");
+        StorageClient.PutBatchResult result = storageClient.putBatch(localDir, rootDir);
+        for (String name : result.failedFiles()) {
+            System.out.println("Файл с таким именем уже существует на сервере: " + name);
+        }
+        System.out.println("Отправлено файлов: " + result.storedNum() + " из " + result.filesNum() + "\n");
+    }
+
+    private static void getBatchCase() throws IOException {
+        String dir = scanner.next();
+
+        System.out.println("Идёт обмен данными с сервером...");
+        StorageClient.GetBatchResult result = storageClient.getBatch(dir.equals(ROOT_PATH) ? null : dir, rootDir);
+        if (result == null) {
+            System.out.println("Некорректный путь к папке\n");
+            return;
+        }
+
+        System.out.println("Получено файлов: " + result.receivedNum() + " из " + result.sentNum() +
+                (result.skippedNum() > 0 ? " (уже есть на устройстве: " + result.skippedNum() + ")" : "") + "\n");
+    }
+
+    private static void deleteBatchCase() {
+        StorageClient.DeleteBatchResult result = storageClient.deleteBatch(scanner.next());
+        if (result == null) {
+            System.out.println("Некорректный шаблон\n");
+            return;
+        }
+
+        for (String name : result.failedFiles()) {
+            System.out.println("Не удалось удалить файл: " + name);
+        }
+        int filesNum = result.deletedFiles().size() + result.failedFiles().size();
+        System.out.println(filesNum == 0 ? "Подходящих файлов на сервере нет\n"
+                : "Удалено файлов: " + result.deletedFiles().size() + " из " + filesNum + "\n");
+    }
+
+    private static void syncCase() throws IOException, InterruptedException {
+        System.out.println("Идёт синхронизация с сервером...");
+        DirectorySync.Result result = storageClient.sync(rootDir);
+        for (String name : result.conflicts()) {
+            System.out.println("Файл изменён и на устройстве, и на сервере: " + name);
+        }
+        for (String name : result.failedFiles()) {
+            System.out.println("Не удалось синхронизировать файл: " + name);
+        }
+        System.out.println("Отправлено файлов: " + result.uploadedNum() + ", получено: " + result.downloadedNum() +
+                ", удалено: " + result.deletedNum() + ", без изменений: " + result.unchangedNum() + "\n");
+    }
+
+    private static void deleteCase() {
+        String path = remotePath(new File(rootDir + "/" + scanner.next()));
+
+        System.out.println("Идёт обмен данными с сервером...");
+        if (!storageClient.delete(path)) {
+            System.out.println("Файла по указанному пути не существует\n");
+        } else {
+            System.out.println("Файл успешно удалён\n");
+        }
+    }
 
-        return executionCode[0] == Server.SUCCESS_CODE;
+    private static String remotePath(File file) {
+        return rootDir.relativize(file.toPath()).toString();
     }
 
-    private static void disconnect() throws IOException {
-        dataOutputStream.writeInt(Server.SUCCESS_CODE);
+    private static void disconnect() throws InterruptedException {
+        storageClient.close();
         System.out.println("Завершение работы...");
     }
-}
\ No newline at end of file
+}
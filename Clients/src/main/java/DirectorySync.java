@@ -0,0 +1,394 @@
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DirectorySync {
+    public static final String MANIFEST_NAME = ".sync";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DOWNLOAD_SUFFIX = ".download";
+    private static final int FORMAT_VERSION = 2;
+
+    public record Result(int uploadedNum, int downloadedNum, int deletedNum, int unchangedNum,
+                         List<String> conflicts, List<String> failedFiles) {
+    }
+
+    private enum Action {UPLOAD, DOWNLOAD, DELETE_LOCAL, DELETE_REMOTE}
+
+    private record Transfer(Action action, String name, long size) {
+    }
+
+    private final StorageClient client;
+    private final Path rootDir;
+    private final Path manifestPath;
+    private final long batchFileSize;
+    private final int transfersNum;
+
+    private long generation;
+    private Map<String, StorageClient.FileStat> baseFiles;
+    private final Map<String, StorageClient.FileStat> localFiles = new ConcurrentHashMap<>();
+    private final Set<String> interruptedFiles = ConcurrentHashMap.newKeySet();
+    private Map<String, StorageClient.FileStat> remoteFiles;
+
+    private final Map<String, StorageClient.FileStat> recordedFiles = new ConcurrentHashMap<>();
+    private final Set<String> forgottenFiles = ConcurrentHashMap.newKeySet();
+    private volatile boolean isRemoteChanged;
+    private boolean hasSkippedFiles;
+
+    private final AtomicInteger uploadedNum = new AtomicInteger();
+    private final AtomicInteger downloadedNum = new AtomicInteger();
+    private final AtomicInteger deletedNum = new AtomicInteger();
+    private int unchangedNum;
+    private final List<String> conflicts = new ArrayList<>();
+    private final Queue<String> failedFiles = new ConcurrentLinkedQueue<>();
+
+    public DirectorySync(StorageClient client, Path rootDir, long batchFileSize, int transfersNum) {
+        this.client = client;
+        this.rootDir = rootDir;
+        this.manifestPath = rootDir.resolve(MANIFEST_NAME);
+        this.batchFileSize = batchFileSize;
+        this.transfersNum = Math.max(1, transfersNum);
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        Files.createDirectories(rootDir);
+        baseFiles = loadManifest();
+
+        long knownGeneration = generation;
+        CompletableFuture<StorageClient.Tree> tree = CompletableFuture.supplyAsync(() -> client.tree(null, knownGeneration));
+        try {
+            ForkJoinPool.commonPool().invoke(new ScanTask(rootDir));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        StorageClient.Tree remoteTree = tree.join();
+        if (remoteTree == null) {
+            throw new IOException("Не удалось получить список файлов на сервере");
+        }
+        remoteFiles = remoteTree.isModified() ? remoteTree.files() : baseFiles;
+
+        boolean isCompleted = false;
+        try {
+            execute(plan());
+            isCompleted = true;
+        } finally {
+            generation = isCompleted && !isRemoteChanged && !hasSkippedFiles && conflicts.isEmpty() && failedFiles.isEmpty()
+                    ? remoteTree.generation() : 0;
+            if (!recordedFiles.isEmpty() || !forgottenFiles.isEmpty() || generation != knownGeneration) {
+                saveManifest();
+            }
+        }
+        return new Result(uploadedNum.get(), downloadedNum.get(), deletedNum.get(), unchangedNum, conflicts, List.copyOf(failedFiles));
+    }
+
+    @SuppressWarnings("serial")
+    private class ScanTask extends RecursiveAction {
+        private final Path dir;
+
+        private ScanTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subtasks.add(new ScanTask(entry));
+                    } else if (attrs.isRegularFile()) {
+                        visit(entry, attrs);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    private void visit(Path file, BasicFileAttributes attrs) throws IOException {
+        String name = rootDir.relativize(file).toString();
+        if (File.separatorChar != '/') {
+            name = name.replace(File.separatorChar, '/');
+        }
+        if (name.equals(MANIFEST_NAME) || name.equals(MANIFEST_NAME + TEMP_SUFFIX)
+                || name.endsWith(DOWNLOAD_SUFFIX) || name.endsWith(RangedDownload.PART_SUFFIX + TEMP_SUFFIX)) {
+            return;
+        }
+        if (name.endsWith(RangedDownload.PART_SUFFIX)) {
+            interruptedFiles.add(name.substring(0, name.length() - RangedDownload.PART_SUFFIX.length()));
+            return;
+        }
+
+        StorageClient.FileStat known = baseFiles.get(name);
+        if (known != null && known.size() == attrs.size() && known.modified() == attrs.lastModifiedTime().toMillis()) {
+            localFiles.put(name, known);
+        } else {
+            FileMeta meta = StreamDigest.describe(file);
+            localFiles.put(name, new StorageClient.FileStat(meta.size(), meta.modified(), meta.crc(), meta.hash()));
+        }
+    }
+
+    private List<Transfer> plan() {
+        List<Transfer> transfers = new ArrayList<>();
+        for (Map.Entry<String, StorageClient.FileStat> file : localFiles.entrySet()) {
+            String name = file.getKey();
+            if (isSkipped(name)) {
+                continue;
+            }
+            plan(transfers, name, file.getValue(), remoteFiles.get(name), baseFiles.get(name));
+        }
+        for (Map.Entry<String, StorageClient.FileStat> file : remoteFiles.entrySet()) {
+            String name = file.getKey();
+            if (!localFiles.containsKey(name) && !isSkipped(name)) {
+                plan(transfers, name, null, file.getValue(), baseFiles.get(name));
+            }
+        }
+        if (remoteFiles != baseFiles) {
+            for (String name : baseFiles.keySet()) {
+                if (!localFiles.containsKey(name) && !remoteFiles.containsKey(name)) {
+                    forget(name);
+                }
+            }
+        }
+        transfers.sort(Comparator.comparingLong(Transfer::size));
+        conflicts.sort(null);
+        return transfers;
+    }
+
+    private boolean isSkipped(String name) {
+        if (interruptedFiles.contains(name)) {
+            hasSkippedFiles = true;
+            return true;
+        }
+        return false;
+    }
+
+    private void plan(List<Transfer> transfers, String name, StorageClient.FileStat local,
+                      StorageClient.FileStat remote, StorageClient.FileStat base) {
+        if (local != null && remote != null) {
+            if (isSame(local, remote)) {
+                record(name, local);
+                unchangedNum++;
+            } else if (isSame(local, base)) {
+                transfers.add(new Transfer(Action.DOWNLOAD, name, remote.size()));
+            } else if (isSame(remote, base)) {
+                transfers.add(new Transfer(Action.UPLOAD, name, local.size()));
+            } else {
+                conflicts.add(name);
+            }
+        } else if (local != null) {
+            transfers.add(isSame(local, base) ? new Transfer(Action.DELETE_LOCAL, name, 0)
+                    : new Transfer(Action.UPLOAD, name, local.size()));
+        } else {
+            transfers.add(isSame(remote, base) ? new Transfer(Action.DELETE_REMOTE, name, 0)
+                    : new Transfer(Action.DOWNLOAD, name, remote.size()));
+        }
+    }
+
+    private static boolean isSame(StorageClient.FileStat stat, StorageClient.FileStat base) {
+        return stat == base || base != null && stat.size() == base.size() && Arrays.equals(stat.hash(), base.hash());
+    }
+
+    private void execute(List<Transfer> transfers) throws IOException, InterruptedException {
+        Map<String, Path> smallFiles = new LinkedHashMap<>();
+        Queue<Transfer> queue = new ConcurrentLinkedQueue<>();
+        for (Transfer transfer : transfers) {
+            if (transfer.action() == Action.UPLOAD && !remoteFiles.containsKey(transfer.name()) && transfer.size() <= batchFileSize) {
+                smallFiles.put(transfer.name(), pathOf(transfer.name()));
+            } else {
+                queue.add(transfer);
+            }
+        }
+        if (smallFiles.isEmpty() && queue.isEmpty()) {
+            return;
+        }
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        workers.add(() -> {
+            putSmallFiles(smallFiles);
+            return drain(queue);
+        });
+        for (int i = 1; i < transfersNum; i++) {
+            workers.add(() -> drain(queue));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            for (Future<Void> worker : executor.invokeAll(workers)) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void putSmallFiles(Map<String, Path> files) throws IOException, InterruptedException {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        isRemoteChanged = true;
+        Set<String> rejectedFiles = new HashSet<>(client.putFiles(files).failedFiles());
+        for (String name : files.keySet()) {
+            if (rejectedFiles.contains(name)) {
+                failedFiles.add(name);
+            } else {
+                record(name, localFiles.get(name));
+                uploadedNum.incrementAndGet();
+            }
+        }
+    }
+
+    private Void drain(Queue<Transfer> queue) throws InterruptedException {
+        for (Transfer transfer; (transfer = queue.poll()) != null; ) {
+            try {
+                if (!apply(transfer)) {
+                    failedFiles.add(transfer.name());
+                }
+            } catch (IOException | RuntimeException e) {
+                failedFiles.add(transfer.name());
+            }
+        }
+        return null;
+    }
+
+    private boolean apply(Transfer transfer) throws IOException, InterruptedException {
+        String name = transfer.name();
+        Path file = pathOf(name);
+        switch (transfer.action()) {
+            case UPLOAD -> {
+                isRemoteChanged = true;
+                boolean isStored = remoteFiles.containsKey(name)
+                        ? client.update(file, name).status() == StorageClient.UpdateStatus.UPDATED
+                        : client.put(file, name).isCreated();
+                if (!isStored) {
+                    return false;
+                }
+                record(name, localFiles.get(name));
+                uploadedNum.incrementAndGet();
+            }
+            case DOWNLOAD -> {
+                StorageClient.FileStat remote = remoteFiles.get(name);
+                Path tempPath = Path.of(file + DOWNLOAD_SUFFIX);
+                client.get(name, tempPath, remote);
+                Files.move(tempPath, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                record(name, new StorageClient.FileStat(remote.size(), Files.getLastModifiedTime(file).toMillis(), remote.crc(), remote.hash()));
+                downloadedNum.incrementAndGet();
+            }
+            case DELETE_LOCAL -> {
+                Files.deleteIfExists(file);
+                forget(name);
+                deletedNum.incrementAndGet();
+            }
+            case DELETE_REMOTE -> {
+                isRemoteChanged = true;
+                if (!client.delete(name)) {
+                    return false;
+                }
+                forget(name);
+                deletedNum.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private void record(String name, StorageClient.FileStat stat) {
+        if (baseFiles.get(name) != stat) {
+            recordedFiles.put(name, stat);
+        }
+    }
+
+    private void forget(String name) {
+        if (baseFiles.containsKey(name)) {
+            forgottenFiles.add(name);
+        }
+    }
+
+    private Path pathOf(String name) {
+        return rootDir.resolve(name);
+    }
+
+    private Map<String, StorageClient.FileStat> loadManifest() throws IOException {
+        Map<String, StorageClient.FileStat> files = new HashMap<>();
+        if (!Files.exists(manifestPath)) {
+            return files;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestPath)))) {
+            if (inputStream.readInt() != FORMAT_VERSION) {
+                return files;
+            }
+            long knownGeneration = inputStream.readLong();
+            for (int filesNum = inputStream.readInt(); filesNum > 0; filesNum--) {
+                String name = inputStream.readUTF();
+                long size = inputStream.readLong();
+                long modified = inputStream.readLong();
+                int crc = inputStream.readInt();
+                byte[] hash = new byte[Chunker.HASH_SIZE];
+                inputStream.readFully(hash);
+                files.put(name, new StorageClient.FileStat(size, modified, crc, hash));
+            }
+            generation = knownGeneration;
+        } catch (EOFException e) {
+            files.clear();
+        }
+        return files;
+    }
+
+    private void saveManifest() throws IOException {
+        Map<String, StorageClient.FileStat> files = new HashMap<>(baseFiles);
+        files.keySet().removeAll(forgottenFiles);
+        files.putAll(recordedFiles);
+
+        Path tempPath = Path.of(manifestPath + TEMP_SUFFIX);
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeLong(generation);
+            outputStream.writeInt(files.size());
+            for (Map.Entry<String, StorageClient.FileStat> file : files.entrySet()) {
+                outputStream.writeUTF(file.getKey());
+                outputStream.writeLong(file.getValue().size());
+                outputStream.writeLong(file.getValue().modified());
+                outputStream.writeInt(file.getValue().crc());
+                outputStream.write(file.getValue().hash());
+            }
+        }
+        Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
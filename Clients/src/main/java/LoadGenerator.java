@@ -0,0 +1,263 @@
+import io.netty.channel.EventLoopGroup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadGenerator {
+    private static final String HOST = System.getProperty("netstorage.load.host", "localhost");
+    private static final int PORT = Integer.getInteger("netstorage.load.port", Message.SERVER_PORT);
+    private static final int USERS_NUM = Integer.getInteger("netstorage.load.users", 4);
+    private static final int DURATION = Integer.getInteger("netstorage.load.duration", 60);
+    private static final int WARMUP = Integer.getInteger("netstorage.load.warmup", 5);
+    private static final int REPORT_INTERVAL = Integer.getInteger("netstorage.load.report", 10);
+    private static final int SESSION_DURATION = Integer.getInteger("netstorage.load.session", 0);
+    private static final String MIX = System.getProperty("netstorage.load.mix", "put:40,get:50,del:10");
+    private static final String SIZES = System.getProperty("netstorage.load.sizes", "4096:50,65536:30,1048576:15,16777216:5");
+    private static final String LOGIN_PREFIX = System.getProperty("netstorage.load.login", "load");
+    private static final String PASSWORD = System.getProperty("netstorage.load.password", "load");
+
+    private static final String PUT_OPERATION = "put";
+    private static final String GET_OPERATION = "get";
+    private static final String DELETE_OPERATION = "del";
+    private static final List<String> OPERATIONS = List.of(PUT_OPERATION, GET_OPERATION, DELETE_OPERATION);
+
+    private static class WeightedChoice<T> {
+        private final List<T> values = new ArrayList<>();
+        private final List<Integer> cumulativeWeights = new ArrayList<>();
+        private int totalWeight;
+
+        private void add(T value, int weight) {
+            if (weight <= 0) {
+                return;
+            }
+            totalWeight += weight;
+            values.add(value);
+            cumulativeWeights.add(totalWeight);
+        }
+
+        private T pick(Random random) {
+            int point = random.nextInt(totalWeight);
+            for (int i = 0; ; i++) {
+                if (point < cumulativeWeights.get(i)) {
+                    return values.get(i);
+                }
+            }
+        }
+    }
+
+    private static class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    private static final Map<String, OperationStats> stats = new LinkedHashMap<>();
+    private static final LongAdder completedNum = new LongAdder();
+    private static final LatencyHistogram queueLatency = new LatencyHistogram();
+    private static final LongAdder positionUpdates = new LongAdder();
+
+    private static WeightedChoice<String> mix;
+    private static WeightedChoice<Long> sizes;
+    private static final Map<Long, Path> files = new HashMap<>();
+
+    private static long measureFrom;
+    private static long deadline;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        mix = new WeightedChoice<>();
+        for (Map.Entry<String, Integer> weight : parseWeights(MIX).entrySet()) {
+            if (!OPERATIONS.contains(weight.getKey())) {
+                throw new IllegalArgumentException("Неизвестная операция: " + weight.getKey());
+            }
+            mix.add(weight.getKey(), weight.getValue());
+        }
+        sizes = new WeightedChoice<>();
+        for (Map.Entry<String, Integer> weight : parseWeights(SIZES).entrySet()) {
+            sizes.add(Long.parseLong(weight.getKey()), weight.getValue());
+        }
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new OperationStats());
+        }
+
+        Path dataDir = Files.createTempDirectory("netstorage-load");
+        for (Long size : sizes.values) {
+            files.put(size, createFile(dataDir, size));
+        }
+
+        System.out.println("Пользователей: " + USERS_NUM + ", длительность: " + DURATION + " с (разогрев " + WARMUP + " с)\n" +
+                "Смесь операций: " + MIX + "\nРазмеры файлов: " + SIZES + "\n");
+
+        EventLoopGroup workerGroup = Transport.newEventLoopGroup(0);
+        long startTime = System.nanoTime();
+        measureFrom = startTime + TimeUnit.SECONDS.toNanos(WARMUP);
+        deadline = measureFrom + TimeUnit.SECONDS.toNanos(DURATION);
+
+        CountDownLatch finished = new CountDownLatch(USERS_NUM);
+        for (int i = 0; i < USERS_NUM; i++) {
+            int index = i;
+            new Thread(() -> {
+                try {
+                    runUser(workerGroup, index);
+                } finally {
+                    finished.countDown();
+                }
+            }, "load-user-" + i).start();
+        }
+
+        long lastCompletedNum = 0;
+        while (!finished.await(REPORT_INTERVAL, TimeUnit.SECONDS)) {
+            long completed = completedNum.sum();
+            System.out.printf("%4d с: выполнено операций %d (%.1f в секунду)%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime), completed,
+                    (completed - lastCompletedNum) / (double) REPORT_INTERVAL);
+            lastCompletedNum = completed;
+        }
+
+        workerGroup.shutdownGracefully();
+        for (Path file : files.values()) {
+            Files.delete(file);
+        }
+        Files.delete(dataDir);
+
+        printReport();
+    }
+
+    private static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split(":");
+            weights.put(parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+        }
+        return weights;
+    }
+
+    private static Path createFile(Path dir, long size) throws IOException {
+        Path file = dir.resolve(size + ".bin");
+        Random random = new Random(size);
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += buffer.length) {
+                random.nextBytes(buffer);
+                outputStream.write(buffer, 0, (int) Math.min(buffer.length, size - written));
+            }
+        }
+        return file;
+    }
+
+    private static void runUser(EventLoopGroup workerGroup, int index) {
+        String login = LOGIN_PREFIX + index;
+        Random random = new Random(index);
+        List<String> uploadedFiles = new ArrayList<>();
+        long[] seq = {0};
+
+        try {
+            Path downloadDir = Files.createTempDirectory("netstorage-load-" + login);
+            try {
+                while (System.nanoTime() < deadline) {
+                    runSession(workerGroup, login, random, uploadedFiles, seq, downloadDir);
+                }
+            } finally {
+                Files.delete(downloadDir);
+            }
+        } catch (Exception e) {
+            System.err.println("Пользователь " + login + " остановлен: " + e);
+        }
+    }
+
+    private static void runSession(EventLoopGroup workerGroup, String login, Random random, List<String> uploadedFiles,
+                                   long[] seq, Path downloadDir) throws Exception {
+        try (StorageClient client = new StorageClient(workerGroup, HOST, PORT)) {
+            long queueStartTime = System.nanoTime();
+            client.connect(position -> positionUpdates.increment());
+            long queueEndTime = System.nanoTime();
+            if (queueStartTime >= measureFrom && queueEndTime <= deadline) {
+                queueLatency.record(queueEndTime - queueStartTime);
+            }
+            if (!client.login(login, PASSWORD) && !client.register(login, PASSWORD)) {
+                throw new IOException("Не удалось войти под логином " + login);
+            }
+
+            long sessionDeadline = SESSION_DURATION > 0
+                    ? Math.min(deadline, System.nanoTime() + TimeUnit.SECONDS.toNanos(SESSION_DURATION)) : deadline;
+            while (System.nanoTime() < sessionDeadline) {
+                String operation = mix.pick(random);
+                if (uploadedFiles.isEmpty()) {
+                    operation = PUT_OPERATION;
+                }
+
+                long startTime = System.nanoTime();
+                long bytes;
+                try {
+                    bytes = switch (operation) {
+                        case PUT_OPERATION -> {
+                            long size = sizes.pick(random);
+                            String name = "load/" + seq[0]++ + ".bin";
+                            if (client.put(files.get(size), name).isCreated()) {
+                                uploadedFiles.add(name);
+                            }
+                            yield size;
+                        }
+                        case GET_OPERATION -> {
+                            String name = uploadedFiles.get(random.nextInt(uploadedFiles.size()));
+                            StorageClient.FileStat stat = client.stat(name);
+                            if (stat == null) {
+                                throw new IOException("Файл " + name + " не найден на сервере");
+                            }
+                            Path file = downloadDir.resolve("file.bin");
+                            client.get(name, file, stat);
+                            Files.delete(file);
+                            yield stat.size();
+                        }
+                        default -> {
+                            client.delete(uploadedFiles.remove(random.nextInt(uploadedFiles.size())));
+                            yield 0;
+                        }
+                    };
+                } catch (Exception e) {
+                    stats.get(operation).errors.increment();
+                    throw e;
+                }
+
+                long endTime = System.nanoTime();
+                if (startTime >= measureFrom && endTime <= deadline) {
+                    OperationStats operationStats = stats.get(operation);
+                    operationStats.latency.record(endTime - startTime);
+                    operationStats.bytes.add(bytes);
+                }
+                completedNum.increment();
+            }
+
+            if (System.nanoTime() >= deadline) {
+                for (String name : uploadedFiles) {
+                    client.delete(name);
+                }
+                uploadedFiles.clear();
+            }
+        }
+    }
+
+    private static void printReport() {
+        final double seconds = DURATION;
+        System.out.printf("%n%-9s %9s %7s %10s %9s %9s %9s %9s %9s %9s %9s%n",
+                "Операция", "Запросов", "Ошибок", "Запр/с", "МБ/с", "Ср., мс", "p50, мс", "p90, мс", "p99, мс", "p99.9, мс", "Макс, мс");
+        for (Map.Entry<String, OperationStats> operation : stats.entrySet()) {
+            LatencyHistogram.Snapshot latency = operation.getValue().latency.snapshot();
+            System.out.printf("%-9s %9d %7d %10.1f %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.getKey(), latency.count(), operation.getValue().errors.sum(),
+                    latency.count() / seconds, operation.getValue().bytes.sum() / seconds / (1024 * 1024),
+                    latency.meanMicros() / 1000.0, latency.p50Micros() / 1000.0, latency.p90Micros() / 1000.0,
+                    latency.p99Micros() / 1000.0, latency.p999Micros() / 1000.0, latency.maxMicros() / 1000.0);
+        }
+
+        LatencyHistogram.Snapshot queue = queueLatency.snapshot();
+        System.out.printf("%nОжидание в очереди: подключений %d, ср. %.2f мс, p99 %.2f мс, макс. %.2f мс; уведомлений о позиции: %d%n",
+                queue.count(), queue.meanMicros() / 1000.0, queue.p99Micros() / 1000.0, queue.maxMicros() / 1000.0,
+                positionUpdates.sum());
+    }
+}
@@ -0,0 +1,180 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.zip.CRC32C;
+
+public class RangedDownload {
+    public static final String PART_SUFFIX = ".part";
+
+    private static final int MAX_RANGE_ATTEMPTS = 3;
+
+    private final String remotePath;
+    private final Path path;
+    private final Path partPath;
+    private final long size;
+    private final int crc;
+    private final int rangeSize;
+    private final int rangesNum;
+
+    private final AtomicIntegerArray rangeAttempts;
+
+    private BitSet completedRanges;
+    private int[] rangeCrcs;
+
+    public RangedDownload(String remotePath, Path path, long size, int crc, int rangeSize) {
+        this.remotePath = remotePath;
+        this.path = path;
+        this.partPath = Path.of(path + PART_SUFFIX);
+        this.size = size;
+        this.crc = crc;
+        this.rangeSize = rangeSize;
+        this.rangesNum = (int) ((size + rangeSize - 1) / rangeSize);
+        this.rangeAttempts = new AtomicIntegerArray(rangesNum);
+    }
+
+    public static boolean isInterrupted(Path path) {
+        return Files.exists(Path.of(path + PART_SUFFIX));
+    }
+
+    public void run(List<ServerConnection> connections) throws IOException {
+        if (!loadCompletedRanges()) {
+            completedRanges = new BitSet(rangesNum);
+            rangeCrcs = new int[rangesNum];
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(size);
+            }
+            saveCompletedRanges();
+        }
+
+        Queue<Integer> missingRanges = new ConcurrentLinkedQueue<>();
+        for (int range = completedRanges.nextClearBit(0); range < rangesNum; range = completedRanges.nextClearBit(range + 1)) {
+            missingRanges.add(range);
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (ServerConnection connection : connections) {
+                workers.add(fetchRanges(connection, fileChannel, missingRanges));
+            }
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        int fileCrc = 0;
+        for (int range = 0; range < rangesNum; range++) {
+            fileCrc = Checksum.combine(fileCrc, rangeCrcs[range], rangeLength(range));
+        }
+        Files.delete(partPath);
+        if (fileCrc != crc) {
+            Files.delete(path);
+            throw new IOException("Контрольная сумма файла " + remotePath + " не совпала, файл повреждён при передаче");
+        }
+    }
+
+    private long rangeLength(int range) {
+        return Math.min(rangeSize, size - (long) range * rangeSize);
+    }
+
+    private CompletableFuture<Void> fetchRanges(ServerConnection connection, FileChannel fileChannel, Queue<Integer> missingRanges) {
+        Integer range = missingRanges.poll();
+        if (range == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long offset = (long) range * rangeSize;
+        CRC32C rangeCrc = new CRC32C();
+        return connection.request(Message.IMPORT_COMMAND, remotePath, offset, Unpooled.copyLong(rangeLength(range)),
+                        part -> writePart(fileChannel, part, rangeCrc))
+                .thenCompose(response -> {
+                    try {
+                        if (response.code() != Message.SUCCESS_CODE) {
+                            throw new IOException("Сервер отклонил запрос части файла " + remotePath);
+                        }
+                        ByteBuf details = response.details();
+                        if (details.readableBytes() < Checksum.SIZE || details.getInt(details.readerIndex()) == (int) rangeCrc.getValue()) {
+                            completeRange(fileChannel, range, (int) rangeCrc.getValue());
+                        } else if (rangeAttempts.incrementAndGet(range) < MAX_RANGE_ATTEMPTS) {
+                            missingRanges.add(range);
+                        } else {
+                            throw new IOException("Часть файла " + remotePath + " повреждена при передаче");
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        response.release();
+                    }
+                    return fetchRanges(connection, fileChannel, missingRanges);
+                });
+    }
+
+    private static void writePart(FileChannel fileChannel, Message part, CRC32C rangeCrc) throws IOException {
+        ByteBuf data = part.data();
+        Checksum.update(rangeCrc, data);
+        for (int written = 0; written < data.readableBytes(); ) {
+            written += data.getBytes(data.readerIndex() + written, fileChannel, part.offset() + written, data.readableBytes() - written);
+        }
+    }
+
+    private synchronized void completeRange(FileChannel fileChannel, int range, int crc) throws IOException {
+        fileChannel.force(false);
+        completedRanges.set(range);
+        rangeCrcs[range] = crc;
+        saveCompletedRanges();
+    }
+
+    private boolean loadCompletedRanges() throws IOException {
+        if (!Files.exists(partPath) || !Files.exists(path)) {
+            return false;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(partPath)))) {
+            if (inputStream.readLong() != size || inputStream.readInt() != rangeSize || inputStream.readInt() != crc) {
+                return false;
+            }
+            rangeCrcs = new int[rangesNum];
+            for (int range = 0; range < rangesNum; range++) {
+                rangeCrcs[range] = inputStream.readInt();
+            }
+            completedRanges = BitSet.valueOf(inputStream.readAllBytes());
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void saveCompletedRanges() throws IOException {
+        Path tempPath = Path.of(partPath + ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            outputStream.writeLong(size);
+            outputStream.writeInt(rangeSize);
+            outputStream.writeInt(crc);
+            for (int rangeCrc : rangeCrcs) {
+                outputStream.writeInt(rangeCrc);
+            }
+            outputStream.write(completedRanges.toByteArray());
+        }
+        Files.move(tempPath, partPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,626 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+public class StorageClient implements AutoCloseable {
+    private static final int UPLOAD_WINDOW = Integer.getInteger("netstorage.upload.window", 16);
+    private static final int DOWNLOAD_STREAMS = Integer.getInteger("netstorage.download.streams", 4);
+    private static final int DOWNLOAD_RANGE_SIZE = Integer.getInteger("netstorage.download.range", 8 * 1024 * 1024);
+    private static final boolean COMPRESSION_ENABLED = Boolean.parseBoolean(System.getProperty("netstorage.compression", "true"));
+    private static final int COMPRESSION_LEVEL = Integer.getInteger("netstorage.compression.level", Deflater.BEST_SPEED);
+    private static final int LIST_PAGE_SIZE = Integer.getInteger("netstorage.list.page", Message.MAX_LIST_SIZE);
+    private static final int BATCH_FILE_SIZE = Integer.getInteger("netstorage.batch.file", 64 * 1024);
+    private static final int MAX_REDIRECTS = Integer.getInteger("netstorage.redirects", 3);
+    private static final boolean REPLICA_READS = Boolean.parseBoolean(System.getProperty("netstorage.replica.reads", "true"));
+    private static final int SYNC_TRANSFERS = Integer.getInteger("netstorage.sync.transfers", 4);
+
+    public record PutResult(boolean isCreated, int sentParts, int partsNum) {
+    }
+
+    public enum UpdateStatus {UPDATED, NOT_FOUND, BUSY}
+
+    public record UpdateResult(UpdateStatus status, long sentBytes) {
+    }
+
+    public record Entry(String name, boolean isDirectory, long size, long modified) {
+    }
+
+    public record FileStat(long size, long modified, int crc, byte[] hash) {
+    }
+
+    public record PutBatchResult(int storedNum, int filesNum, List<String> failedFiles) {
+    }
+
+    public record GetBatchResult(int receivedNum, int skippedNum, long sentNum) {
+    }
+
+    public record DeleteBatchResult(List<String> deletedFiles, List<String> failedFiles) {
+    }
+
+    public record Tree(long generation, boolean isModified, Map<String, FileStat> files) {
+    }
+
+    private final EventLoopGroup workerGroup;
+    private String host;
+    private int port;
+    private ServerConnection serverConnection;
+    private IntConsumer queueListener;
+
+    private String login;
+    private String password;
+    private String sessionToken;
+    private boolean chunkStoreAvailable;
+
+    private boolean isRouted;
+    private String replicaNode;
+    private StorageClient replicaClient;
+
+    public StorageClient(EventLoopGroup workerGroup, String host, int port) throws InterruptedException {
+        this.workerGroup = workerGroup;
+        this.host = host;
+        this.port = port;
+        this.serverConnection = new ServerConnection(workerGroup, host, port);
+    }
+
+    public void connect(IntConsumer queueListener) throws IOException {
+        this.queueListener = queueListener;
+        Message response = serverConnection.request(Message.CONNECT_COMMAND, null, 0, offeredFeatures(),
+                part -> queueListener.accept(part.data().getInt(part.data().readerIndex()))).join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                throw new IOException("Сервер отклонил подключение");
+            }
+            enableFeatures(serverConnection, response);
+        } finally {
+            response.release();
+        }
+    }
+
+    public boolean userExists(String login) throws IOException, InterruptedException {
+        Message response = routedRequest(Message.USER_COMMAND, login, 0, Unpooled.EMPTY_BUFFER);
+        try {
+            return response.code() == Message.SUCCESS_CODE;
+        } finally {
+            response.release();
+        }
+    }
+
+    public boolean login(String login, String password) throws IOException, InterruptedException {
+        return openSession(Message.LOGIN_COMMAND, login, 0, password);
+    }
+
+    public boolean register(String login, String password) throws IOException, InterruptedException {
+        return openSession(Message.REGISTER_COMMAND, login, 0, password);
+    }
+
+    private boolean openSession(String command, String login, long mode, String password) throws IOException, InterruptedException {
+        Message response = routedRequest(command, login, mode, Unpooled.copiedBuffer(password, StandardCharsets.UTF_8));
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                return false;
+            }
+            sessionToken = response.details().toString(StandardCharsets.UTF_8);
+        } finally {
+            response.release();
+        }
+
+        this.login = login;
+        this.password = password;
+        chunkStoreAvailable = requestIsGranted(Message.MISSING_COMMAND, null, Unpooled.EMPTY_BUFFER);
+        return true;
+    }
+
+    private Message routedRequest(String command, String login, long mode, ByteBuf data) throws IOException, InterruptedException {
+        try {
+            for (int redirectsNum = 0; ; redirectsNum++) {
+                Message response = serverConnection.request(command, login, mode, data.retainedDuplicate(), null).join();
+                if (response.code() != Message.REDIRECT_CODE || redirectsNum >= MAX_REDIRECTS) {
+                    return response;
+                }
+
+                String node = response.details().toString(StandardCharsets.UTF_8);
+                response.release();
+                reconnect(node);
+            }
+        } finally {
+            data.release();
+        }
+    }
+
+    private void reconnect(String node) throws IOException, InterruptedException {
+        int separator = node.lastIndexOf(':');
+        serverConnection.close();
+        closeReplica();
+        host = node.substring(0, separator);
+        port = Integer.parseInt(node.substring(separator + 1));
+        serverConnection = new ServerConnection(workerGroup, host, port);
+        connect(queueListener);
+    }
+
+    public boolean isChunkStoreAvailable() {
+        return chunkStoreAvailable;
+    }
+
+    private ByteBuf offeredFeatures() {
+        return Unpooled.buffer().writeByte(COMPRESSION_ENABLED ? CompressionCodec.FEATURE : 0);
+    }
+
+    private void enableFeatures(ServerConnection connection, Message response) {
+        byte features = response.details().isReadable() ? response.details().getByte(0) : 0;
+        if ((features & CompressionCodec.FEATURE) != 0) {
+            connection.enableCompression(COMPRESSION_LEVEL);
+        }
+    }
+
+    private ServerConnection openAttachedConnection() throws InterruptedException, IOException {
+        ServerConnection connection = new ServerConnection(workerGroup, host, port);
+
+        ByteBuf data = offeredFeatures();
+        data.writeCharSequence(sessionToken, StandardCharsets.UTF_8);
+        Message response = connection.request(Message.ATTACH_COMMAND, null, data).join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                connection.close();
+                throw new IOException("Не удалось открыть дополнительное соединение с сервером");
+            }
+            enableFeatures(connection, response);
+        } finally {
+            response.release();
+        }
+        return connection;
+    }
+
+    public PutResult put(Path file, String remotePath) throws IOException, InterruptedException {
+        if (chunkStoreAvailable) {
+            return exportChunks(file, remotePath);
+        }
+        if (!requestIsGranted(Message.PUT_COMMAND, remotePath, Unpooled.EMPTY_BUFFER)) {
+            return new PutResult(false, 0, 0);
+        }
+        int partsNum = exportFile(file, remotePath);
+        return new PutResult(true, partsNum, partsNum);
+    }
+
+    private int exportFile(Path file, String remotePath) throws IOException, InterruptedException {
+        RequestWindow window = new RequestWindow(UPLOAD_WINDOW);
+
+        int partsNum = 0;
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            for (long pos = 0; pos < size && !window.isFailed(); pos += Message.MAX_DATA_SIZE) {
+                long offset = pos;
+                ByteBuf data = Checksum.seal(readData(fileChannel, offset, (int) Math.min(Message.MAX_DATA_SIZE, size - pos)));
+                window.submit(() -> serverConnection.request(Message.EXPORT_COMMAND, remotePath, offset, data, null));
+                partsNum++;
+            }
+        }
+        window.await();
+
+        if (!requestIsGranted(Message.COMMIT_COMMAND, remotePath, Unpooled.EMPTY_BUFFER)) {
+            throw new IOException("Ошибка при отправке файла " + file);
+        }
+        return partsNum;
+    }
+
+    private PutResult exportChunks(Path file, String remotePath) throws IOException, InterruptedException {
+        if (requestIsGranted(Message.GET_COMMAND, remotePath, Unpooled.EMPTY_BUFFER)) {
+            return new PutResult(false, 0, 0);
+        }
+
+        List<Chunker.Chunk> chunks = Chunker.split(file);
+        ByteBuf hashes = Unpooled.buffer(chunks.size() * Chunker.HASH_SIZE);
+        ByteBuf manifest = Unpooled.buffer(chunks.size() * (Chunker.HASH_SIZE + Integer.BYTES));
+        for (Chunker.Chunk chunk : chunks) {
+            hashes.writeBytes(chunk.hash());
+            manifest.writeBytes(chunk.hash()).writeInt(chunk.length());
+        }
+
+        BitSet missingChunks;
+        Message response = serverConnection.request(Message.MISSING_COMMAND, null, hashes).join();
+        try {
+            missingChunks = BitSet.valueOf(response.details().nioBuffer());
+        } finally {
+            response.release();
+        }
+
+        RequestWindow window = new RequestWindow(UPLOAD_WINDOW);
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int index = missingChunks.nextSetBit(0); index >= 0 && !window.isFailed(); index = missingChunks.nextSetBit(index + 1)) {
+                Chunker.Chunk chunk = chunks.get(index);
+                ByteBuf data = readData(fileChannel, chunk.offset(), chunk.length());
+                window.submit(() -> serverConnection.request(Message.CHUNK_COMMAND, chunk.name(), data));
+            }
+        }
+        window.await();
+
+        if (!requestIsGranted(Message.MANIFEST_COMMAND, remotePath, manifest)) {
+            return new PutResult(false, 0, 0);
+        }
+        return new PutResult(true, missingChunks.cardinality(), chunks.size());
+    }
+
+    private static ByteBuf readData(FileChannel fileChannel, long position, int size) throws IOException {
+        ByteBuf data = PooledByteBufAllocator.DEFAULT.ioBuffer(size + Checksum.SIZE);
+        while (data.writerIndex() < size) {
+            if (data.writeBytes(fileChannel, position + data.writerIndex(), size - data.writerIndex()) == -1) {
+                data.release();
+                throw new IOException("Ошибка при считывании данных из файла");
+            }
+        }
+        return data;
+    }
+
+    public void get(String remotePath, Path file, FileStat stat) throws IOException, InterruptedException {
+        long streams = Math.min(DOWNLOAD_STREAMS, stat.size() / DOWNLOAD_RANGE_SIZE);
+        StorageClient replica = streams > 1 ? replicaOf(remotePath) : null;
+        List<ServerConnection> connections = new ArrayList<>(List.of(serverConnection));
+        List<ServerConnection> attachedConnections = new ArrayList<>();
+        try {
+            if (replica != null) {
+                connections.add(replica.serverConnection);
+            }
+            while (connections.size() < streams) {
+                StorageClient client = replica != null && connections.size() % 2 != 0 ? replica : this;
+                ServerConnection connection = client.openAttachedConnection();
+                attachedConnections.add(connection);
+                connections.add(connection);
+            }
+            new RangedDownload(remotePath, file, stat.size(), stat.crc(), DOWNLOAD_RANGE_SIZE).run(connections);
+        } finally {
+            for (ServerConnection connection : attachedConnections) {
+                connection.close();
+            }
+        }
+    }
+
+    private synchronized StorageClient replicaOf(String remotePath) throws InterruptedException {
+        if (!REPLICA_READS || login == null) {
+            return null;
+        }
+
+        try {
+            if (!isRouted) {
+                isRouted = true;
+                List<String> owners = route(login);
+                replicaNode = owners.size() > 1 ? owners.get(1) : null;
+            }
+            if (replicaNode == null) {
+                return null;
+            }
+            if (replicaClient == null) {
+                int separator = replicaNode.lastIndexOf(':');
+                StorageClient client = new StorageClient(workerGroup, replicaNode.substring(0, separator),
+                        Integer.parseInt(replicaNode.substring(separator + 1)));
+                client.connect(queueListener);
+                if (!client.openSession(Message.LOGIN_COMMAND, login, Message.REPLICA_LOGIN, password)) {
+                    client.close();
+                    replicaNode = null;
+                    return null;
+                }
+                replicaClient = client;
+            }
+
+            FileStat stat = stat(remotePath);
+            FileStat replicaStat = replicaClient.stat(remotePath);
+            return stat != null && replicaStat != null && stat.size() == replicaStat.size()
+                    && Arrays.equals(stat.hash(), replicaStat.hash()) ? replicaClient : null;
+        } catch (IOException | RuntimeException e) {
+            closeReplica();
+            replicaNode = null;
+            return null;
+        }
+    }
+
+    private List<String> route(String login) {
+        Message response = serverConnection.request(Message.ROUTE_COMMAND, login, Unpooled.EMPTY_BUFFER).join();
+        try {
+            List<String> owners = new ArrayList<>();
+            if (response.code() != Message.SUCCESS_CODE) {
+                return owners;
+            }
+
+            ByteBuf details = response.details();
+            for (long ownersNum = MessageDecoder.readVarLong(details); ownersNum > 0; ownersNum--) {
+                int addressSize = (int) MessageDecoder.readVarLong(details);
+                owners.add(details.readCharSequence(addressSize, StandardCharsets.UTF_8).toString());
+            }
+            return owners;
+        } finally {
+            response.release();
+        }
+    }
+
+    private void closeReplica() {
+        isRouted = false;
+        if (replicaClient != null) {
+            replicaClient.close();
+            replicaClient = null;
+        }
+    }
+
+    public boolean delete(String remotePath) {
+        return requestIsGranted(Message.DELETE_COMMAND, remotePath, Unpooled.EMPTY_BUFFER);
+    }
+
+    public UpdateResult update(Path file, String remotePath) throws IOException, InterruptedException {
+        ByteBuf entries = Unpooled.buffer();
+        Message response = serverConnection.request(Message.SIGNATURE_COMMAND, remotePath, 0, Unpooled.EMPTY_BUFFER,
+                part -> entries.writeBytes(part.data(), part.data().readerIndex(), part.data().readableBytes())).join();
+        Delta.Signature signature;
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                return new UpdateResult(UpdateStatus.NOT_FOUND, 0);
+            }
+            signature = Delta.readSignature(response.details().getInt(0), entries);
+        } finally {
+            response.release();
+            entries.release();
+        }
+
+        if (!requestIsGranted(Message.UPDATE_COMMAND, remotePath, Unpooled.copyInt(signature.blockSize()))) {
+            return new UpdateResult(UpdateStatus.BUSY, 0);
+        }
+
+        RequestWindow window = new RequestWindow(UPLOAD_WINDOW);
+        DeltaSender sender = new DeltaSender(window, remotePath);
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+            Delta.diff(inputStream, signature, sender);
+            sender.flush();
+        }
+        window.await();
+
+        if (!requestIsGranted(Message.COMMIT_COMMAND, remotePath, Unpooled.EMPTY_BUFFER)) {
+            throw new IOException("Ошибка при обновлении файла " + file);
+        }
+        return new UpdateResult(UpdateStatus.UPDATED, sender.sentBytes);
+    }
+
+    private class DeltaSender implements Delta.Sink {
+        private static final int FLUSH_THRESHOLD = Message.MAX_DATA_SIZE - 2 * Delta.MAX_BLOCK_SIZE;
+
+        private final RequestWindow window;
+        private final String path;
+        private ByteBuf ops = Unpooled.buffer();
+        private long sentBytes;
+
+        private DeltaSender(RequestWindow window, String path) {
+            this.window = window;
+            this.path = path;
+        }
+
+        @Override
+        public void copy(int block, int count) throws IOException {
+            Delta.writeCopy(ops, block, count);
+            flushIfFull();
+        }
+
+        @Override
+        public void literal(byte[] buffer, int offset, int length) throws IOException {
+            Delta.writeLiteral(ops, buffer, offset, length);
+            flushIfFull();
+        }
+
+        private void flushIfFull() throws IOException {
+            if (ops.readableBytes() >= FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (!ops.isReadable()) {
+                return;
+            }
+            if (window.isFailed()) {
+                throw new IOException("Ошибка при обмене данными с сервером");
+            }
+
+            ByteBuf data = ops;
+            ops = Unpooled.buffer();
+            sentBytes += data.readableBytes();
+            Checksum.seal(data);
+            try {
+                window.submit(() -> serverConnection.request(Message.DELTA_COMMAND, path, 0, data, null));
+            } catch (InterruptedException e) {
+                data.release();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    public List<Entry> list(String dir) {
+        List<Entry> entries = new ArrayList<>();
+        for (boolean hasMore = true; hasMore; ) {
+            Message response = serverConnection.request(Message.LIST_COMMAND, dir, entries.size(), Unpooled.copyInt(LIST_PAGE_SIZE), null).join();
+            try {
+                if (response.code() != Message.SUCCESS_CODE) {
+                    return null;
+                }
+
+                ByteBuf details = response.details();
+                hasMore = details.readBoolean();
+                while (details.isReadable()) {
+                    boolean isDirectory = details.readBoolean();
+                    int nameSize = (int) MessageDecoder.readVarLong(details);
+                    String name = details.readCharSequence(nameSize, StandardCharsets.UTF_8).toString();
+                    long size = MessageDecoder.readVarLong(details);
+                    long modified = MessageDecoder.readVarLong(details);
+                    entries.add(new Entry(name, isDirectory, size, modified));
+                }
+            } finally {
+                response.release();
+            }
+        }
+        return entries;
+    }
+
+    public FileStat stat(String remotePath) {
+        Message response = serverConnection.request(Message.STAT_COMMAND, remotePath, Unpooled.EMPTY_BUFFER).join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                return null;
+            }
+
+            ByteBuf details = response.details();
+            long size = details.readLong();
+            long modified = details.readLong();
+            int crc = details.readInt();
+            byte[] hash = new byte[details.readableBytes()];
+            details.readBytes(hash);
+            return new FileStat(size, modified, crc, hash);
+        } finally {
+            response.release();
+        }
+    }
+
+    public PutBatchResult putBatch(Path localDir, Path baseDir) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(localDir)) {
+            files = paths.filter(Files::isRegularFile).filter(path -> !path.toString().endsWith(RangedDownload.PART_SUFFIX)).toList();
+        }
+
+        Map<String, Path> namedFiles = new LinkedHashMap<>();
+        for (Path file : files) {
+            namedFiles.put(baseDir.relativize(file).toString(), file);
+        }
+        return putFiles(namedFiles);
+    }
+
+    public PutBatchResult putFiles(Map<String, Path> files) throws IOException, InterruptedException {
+        BatchUpload upload = new BatchUpload(serverConnection, UPLOAD_WINDOW);
+        Map<String, Path> largeFiles = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            if (Files.size(file.getValue()) > BATCH_FILE_SIZE) {
+                largeFiles.put(file.getKey(), file.getValue());
+            } else {
+                upload.add(file.getKey(), file.getValue());
+            }
+        }
+        upload.finish();
+
+        int storedNum = upload.storedNum();
+        List<String> failedFiles = new ArrayList<>(upload.failedFiles());
+        for (Map.Entry<String, Path> file : largeFiles.entrySet()) {
+            if (put(file.getValue(), file.getKey()).isCreated()) {
+                storedNum++;
+            } else {
+                failedFiles.add(file.getKey());
+            }
+        }
+        return new PutBatchResult(storedNum, files.size(), failedFiles);
+    }
+
+    public GetBatchResult getBatch(String dir, Path baseDir) throws IOException {
+        try (BatchDownload download = new BatchDownload(baseDir)) {
+            Message response = serverConnection.request(Message.GET_BATCH_COMMAND, dir, 0, Unpooled.EMPTY_BUFFER, download::accept).join();
+            try {
+                if (response.code() != Message.SUCCESS_CODE) {
+                    return null;
+                }
+                return new GetBatchResult(download.receivedNum(), download.skippedNum(), MessageDecoder.readVarLong(response.details()));
+            } finally {
+                response.release();
+            }
+        }
+    }
+
+    public DeleteBatchResult deleteBatch(String pattern) {
+        List<String> deletedFiles = new ArrayList<>();
+        List<String> failedFiles = new ArrayList<>();
+        Message response = serverConnection.request(Message.DELETE_BATCH_COMMAND, pattern, 0, Unpooled.EMPTY_BUFFER, part -> {
+            ByteBuf entries = part.data();
+            while (entries.isReadable()) {
+                String name = entries.readCharSequence((int) MessageDecoder.readVarLong(entries), StandardCharsets.UTF_8).toString();
+                (entries.readByte() == Message.SUCCESS_CODE ? deletedFiles : failedFiles).add(name);
+            }
+        }).join();
+        try {
+            return response.code() == Message.SUCCESS_CODE ? new DeleteBatchResult(deletedFiles, failedFiles) : null;
+        } finally {
+            response.release();
+        }
+    }
+
+    public Tree tree(String dir, long knownGeneration) {
+        Map<String, FileStat> files = new HashMap<>();
+        ByteBuf data = knownGeneration != 0 ? Unpooled.copyLong(knownGeneration) : Unpooled.EMPTY_BUFFER;
+        Message response = serverConnection.request(Message.SYNC_COMMAND, dir, 0, data, part -> {
+            ByteBuf entries = part.data();
+            while (entries.isReadable()) {
+                String name = entries.readCharSequence((int) MessageDecoder.readVarLong(entries), StandardCharsets.UTF_8).toString();
+                long size = MessageDecoder.readVarLong(entries);
+                long modified = MessageDecoder.readVarLong(entries);
+                int crc = entries.readInt();
+                byte[] hash = new byte[Chunker.HASH_SIZE];
+                entries.readBytes(hash);
+                files.put(name, new FileStat(size, modified, crc, hash));
+            }
+        }).join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                return null;
+            }
+
+            ByteBuf details = response.details();
+            long generation = details.readLong();
+            return details.readBoolean() ? new Tree(generation, true, files) : new Tree(generation, false, null);
+        } finally {
+            response.release();
+        }
+    }
+
+    public DirectorySync.Result sync(Path localDir) throws IOException, InterruptedException {
+        return new DirectorySync(this, localDir, BATCH_FILE_SIZE, SYNC_TRANSFERS).run();
+    }
+
+    public Map<String, Long> stats() {
+        Message response = serverConnection.request(Message.STATS_COMMAND, null, Unpooled.EMPTY_BUFFER).join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                return null;
+            }
+
+            Map<String, Long> values = new LinkedHashMap<>();
+            ByteBuf details = response.details();
+            for (long valuesNum = MessageDecoder.readVarLong(details); valuesNum > 0; valuesNum--) {
+                int nameSize = (int) MessageDecoder.readVarLong(details);
+                values.put(details.readCharSequence(nameSize, StandardCharsets.UTF_8).toString(), MessageDecoder.readVarLong(details));
+            }
+            return values;
+        } finally {
+            response.release();
+        }
+    }
+
+    private boolean requestIsGranted(String command, String path, ByteBuf data) {
+        Message response = serverConnection.request(command, path, data).join();
+        try {
+            return response.command().equals(Message.REPORT_COMMAND) && response.code() == Message.SUCCESS_CODE;
+        } finally {
+            response.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        closeReplica();
+        serverConnection.close();
+    }
+}
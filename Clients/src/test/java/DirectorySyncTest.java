@@ -0,0 +1,119 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectorySyncTest {
+    private LocalServer server;
+    private StorageClient client;
+    private Path localDir;
+    private Path scratchDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new LocalServer();
+        client = server.newClient("sync");
+        localDir = Files.createDirectories(server.baseDir().resolve("local"));
+        scratchDir = Files.createDirectories(server.baseDir().resolve("scratch"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    private void writeLocal(String name, String content) throws IOException {
+        Path file = localDir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private Path scratch(String name, String content) throws IOException {
+        return Files.writeString(scratchDir.resolve(name), content);
+    }
+
+    private String readLocal(String name) throws IOException {
+        return Files.readString(localDir.resolve(name));
+    }
+
+    private String readRemote(String name) throws IOException, InterruptedException {
+        Path file = scratchDir.resolve(name + ".remote");
+        client.get(name, file, client.stat(name));
+        return Files.readString(file, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void exchangesNewFiles() throws Exception {
+        writeLocal("dir/local.txt", "local");
+        assertTrue(client.put(scratch("remote.txt", "remote"), "remote.txt").isCreated());
+
+        DirectorySync.Result result = client.sync(localDir);
+
+        assertEquals(1, result.uploadedNum());
+        assertEquals(1, result.downloadedNum());
+        assertEquals("remote", readLocal("remote.txt"));
+        assertEquals("local", readRemote("dir/local.txt"));
+        assertEquals(2, client.sync(localDir).unchangedNum());
+    }
+
+    @Test
+    void mergesChangesAgainstLastSync() throws Exception {
+        for (String name : List.of("same", "local-edit", "remote-edit", "both-edit", "local-delete", "remote-delete")) {
+            writeLocal(name, name);
+        }
+        assertEquals(6, client.sync(localDir).uploadedNum());
+
+        writeLocal("local-edit", "changed locally");
+        assertEquals(StorageClient.UpdateStatus.UPDATED,
+                client.update(scratch("remote-edit", "changed remotely"), "remote-edit").status());
+        writeLocal("both-edit", "changed locally");
+        assertEquals(StorageClient.UpdateStatus.UPDATED,
+                client.update(scratch("both-edit", "changed remotely too"), "both-edit").status());
+        Files.delete(localDir.resolve("local-delete"));
+        assertTrue(client.delete("remote-delete"));
+
+        DirectorySync.Result result = client.sync(localDir);
+
+        assertEquals(1, result.uploadedNum());
+        assertEquals(1, result.downloadedNum());
+        assertEquals(2, result.deletedNum());
+        assertEquals(1, result.unchangedNum());
+        assertEquals(List.of("both-edit"), result.conflicts());
+        assertTrue(result.failedFiles().isEmpty());
+
+        assertEquals("changed locally", readRemote("local-edit"));
+        assertEquals("changed remotely", readLocal("remote-edit"));
+        assertEquals("changed locally", readLocal("both-edit"));
+        assertEquals("changed remotely too", readRemote("both-edit"));
+        assertNull(client.stat("local-delete"));
+        assertFalse(Files.exists(localDir.resolve("remote-delete")));
+    }
+
+    @Test
+    void skipsFilesWithPartCompanion() throws Exception {
+        writeLocal("interrupted.bin", "complete");
+        writeLocal("fresh.bin", "fresh");
+        assertEquals(2, client.sync(localDir).uploadedNum());
+
+        writeLocal("interrupted.bin", "partial");
+        writeLocal("interrupted.bin" + RangedDownload.PART_SUFFIX, "");
+        Files.delete(localDir.resolve("fresh.bin"));
+        writeLocal("fresh.bin" + RangedDownload.PART_SUFFIX, "");
+
+        DirectorySync.Result result = client.sync(localDir);
+
+        assertEquals(0, result.uploadedNum());
+        assertEquals(0, result.downloadedNum());
+        assertEquals(0, result.deletedNum());
+        assertEquals("complete", readRemote("interrupted.bin"));
+        assertEquals("fresh", readRemote("fresh.bin"));
+    }
+}
@@ -0,0 +1,109 @@
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+class LocalServer implements AutoCloseable {
+    private static final String CREATE_TABLE = "CREATE TABLE LogPass (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "Login STRING (31) UNIQUE NOT NULL, Password STRING (31) NOT NULL);";
+
+    private final Path baseDir;
+    private final CredentialStore credentialStore;
+    private final StorageExecutor storageExecutor;
+    private final MetadataIndex metadataIndex;
+    private final GroupCommit groupCommit;
+
+    private final EventLoopGroup bossGroup = Transport.newEventLoopGroup(1);
+    private final EventLoopGroup workerGroup = Transport.newEventLoopGroup(1);
+    private final EventLoopGroup clientGroup = Transport.newEventLoopGroup(1);
+    private final Channel serverChannel;
+
+    LocalServer() throws IOException, SQLException, InterruptedException {
+        baseDir = Files.createTempDirectory("netstorage-test");
+        Path rootDir = Files.createDirectories(baseDir.resolve("root"));
+        Path database = baseDir.resolve("credentials.db");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+        }
+
+        credentialStore = new CredentialStore("jdbc:sqlite:" + database, 1, 16);
+        storageExecutor = StorageExecutor.create(4, false);
+        metadataIndex = new MetadataIndex(rootDir, baseDir.resolve("index"), null, 1000, true);
+        groupCommit = Server.newGroupCommit(metadataIndex, false);
+        serverChannel = Server.bind(0, rootDir, bossGroup, workerGroup, credentialStore, storageExecutor, null,
+                metadataIndex, new BlockCache(1024 * 1024), groupCommit, null);
+    }
+
+    Path baseDir() {
+        return baseDir;
+    }
+
+    EventLoopGroup clientGroup() {
+        return clientGroup;
+    }
+
+    int port() {
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    ServerConnection newConnection(String login) throws InterruptedException {
+        ServerConnection connection = new ServerConnection(clientGroup, "localhost", port());
+        expectSuccess(connection.request(Message.CONNECT_COMMAND, null, Unpooled.buffer().writeByte(0)));
+        expectSuccess(connection.request(Message.LOGIN_COMMAND, login, Unpooled.copiedBuffer(login, StandardCharsets.UTF_8)));
+        return connection;
+    }
+
+    private static void expectSuccess(CompletableFuture<Message> request) {
+        Message response = request.join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                throw new IllegalStateException("Сервер отклонил запрос");
+            }
+        } finally {
+            response.release();
+        }
+    }
+
+    StorageClient newClient(String login) throws IOException, InterruptedException {
+        StorageClient client = new StorageClient(clientGroup, "localhost", port());
+        client.connect(position -> {
+        });
+        if (!client.login(login, login) && !client.register(login, login)) {
+            client.close();
+            throw new IOException("Не удалось войти в систему");
+        }
+        return client;
+    }
+
+    @Override
+    public void close() throws IOException, SQLException {
+        serverChannel.close().syncUninterruptibly();
+        bossGroup.shutdownGracefully().syncUninterruptibly();
+        workerGroup.shutdownGracefully().syncUninterruptibly();
+        clientGroup.shutdownGracefully().syncUninterruptibly();
+
+        storageExecutor.close();
+        groupCommit.close();
+        metadataIndex.close();
+        credentialStore.close();
+
+        try (Stream<Path> paths = Files.walk(baseDir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangedDownloadTest {
+    private static final String LOGIN = "ranged";
+    private static final String REMOTE_PATH = "data.bin";
+    private static final int RANGE_SIZE = 64 * 1024;
+    private static final int RANGES_NUM = 5;
+
+    private LocalServer server;
+    private ServerConnection connection;
+    private byte[] content;
+    private int contentCrc;
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new LocalServer();
+        content = new byte[RANGES_NUM * RANGE_SIZE - 100];
+        new Random(1).nextBytes(content);
+        contentCrc = crc(content, 0, content.length);
+
+        Path source = Files.write(server.baseDir().resolve("source.bin"), content);
+        try (StorageClient client = server.newClient(LOGIN)) {
+            assertTrue(client.put(source, REMOTE_PATH).isCreated());
+        }
+        connection = server.newConnection(LOGIN);
+        path = server.baseDir().resolve("download").resolve(REMOTE_PATH);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connection.close();
+        server.close();
+    }
+
+    private RangedDownload download(String remotePath) {
+        return new RangedDownload(remotePath, path, content.length, contentCrc, RANGE_SIZE);
+    }
+
+    @Test
+    void downloadsWholeFile() throws IOException {
+        download(REMOTE_PATH).run(List.of(connection));
+
+        assertArrayEquals(content, Files.readAllBytes(path));
+        assertFalse(RangedDownload.isInterrupted(path));
+    }
+
+    @Test
+    void resumesMissingRangesOnly() throws IOException {
+        byte[] local = new byte[content.length];
+        BitSet completedRanges = new BitSet(RANGES_NUM);
+        int[] rangeCrcs = new int[RANGES_NUM];
+        for (int range : new int[]{0, 2}) {
+            int offset = range * RANGE_SIZE;
+            Arrays.fill(local, offset, offset + RANGE_SIZE, (byte) 'x');
+            completedRanges.set(range);
+            rangeCrcs[range] = crc(content, offset, RANGE_SIZE);
+        }
+        Files.createDirectories(path.getParent());
+        Files.write(path, local);
+        writePartFile(content.length, contentCrc, rangeCrcs, completedRanges);
+
+        download(REMOTE_PATH).run(List.of(connection));
+
+        byte[] result = Files.readAllBytes(path);
+        for (int range = 0; range < RANGES_NUM; range++) {
+            int from = range * RANGE_SIZE;
+            int to = Math.min(from + RANGE_SIZE, content.length);
+            byte[] expected = completedRanges.get(range) ? Arrays.copyOfRange(local, from, to) : Arrays.copyOfRange(content, from, to);
+            assertArrayEquals(expected, Arrays.copyOfRange(result, from, to), "часть " + range);
+        }
+        assertFalse(RangedDownload.isInterrupted(path));
+    }
+
+    @Test
+    void ignoresPartFileOfAnotherVersion() throws IOException {
+        BitSet completedRanges = new BitSet(RANGES_NUM);
+        completedRanges.set(0, RANGES_NUM);
+        Files.createDirectories(path.getParent());
+        Files.write(path, new byte[content.length]);
+        writePartFile(content.length, contentCrc + 1, new int[RANGES_NUM], completedRanges);
+
+        download(REMOTE_PATH).run(List.of(connection));
+
+        assertArrayEquals(content, Files.readAllBytes(path));
+        assertFalse(RangedDownload.isInterrupted(path));
+    }
+
+    @Test
+    void keepsPartFileWhenInterrupted() {
+        assertThrows(IOException.class, () -> download("missing.bin").run(List.of(connection)));
+
+        assertTrue(RangedDownload.isInterrupted(path));
+    }
+
+    private void writePartFile(long size, int crc, int[] rangeCrcs, BitSet completedRanges) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(Files.newOutputStream(Path.of(path + RangedDownload.PART_SUFFIX)))) {
+            outputStream.writeLong(size);
+            outputStream.writeInt(RANGE_SIZE);
+            outputStream.writeInt(crc);
+            for (int rangeCrc : rangeCrcs) {
+                outputStream.writeInt(rangeCrc);
+            }
+            outputStream.write(completedRanges.toByteArray());
+        }
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,90 @@
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+public class Checksum {
+    public static final int SIZE = Integer.BYTES;
+
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int ONE = 1 << 31;
+    private static final int[] X2N_TABLE = new int[Integer.SIZE];
+    private static final int[] X2N_INVERSE_TABLE = new int[Integer.SIZE];
+
+    static {
+        X2N_TABLE[0] = ONE >>> 1;
+        X2N_INVERSE_TABLE[0] = POLYNOMIAL << 1 | 1;
+        for (int n = 1; n < Integer.SIZE; n++) {
+            X2N_TABLE[n] = multiply(X2N_TABLE[n - 1], X2N_TABLE[n - 1]);
+            X2N_INVERSE_TABLE[n] = multiply(X2N_INVERSE_TABLE[n - 1], X2N_INVERSE_TABLE[n - 1]);
+        }
+    }
+
+    public static int crc(ByteBuf data) {
+        CRC32C crc = new CRC32C();
+        update(crc, data);
+        return (int) crc.getValue();
+    }
+
+    public static void update(CRC32C crc, ByteBuf data) {
+        for (ByteBuffer buffer : data.nioBuffers()) {
+            crc.update(buffer);
+        }
+    }
+
+    public static ByteBuf seal(ByteBuf data) {
+        return data.writeInt(crc(data));
+    }
+
+    public static ByteBuf unseal(ByteBuf data) {
+        if (data.readableBytes() < SIZE) {
+            return null;
+        }
+
+        ByteBuf payload = data.slice(data.readerIndex(), data.readableBytes() - SIZE);
+        return crc(payload) == sealed(data) ? payload : null;
+    }
+
+    public static int sealed(ByteBuf data) {
+        return data.getInt(data.writerIndex() - SIZE);
+    }
+
+    public static int combine(int crc1, int crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        return multiply(operator(X2N_TABLE, length2), crc1) ^ crc2;
+    }
+
+    public static int truncate(int crc, int crc2, long length2) {
+        if (length2 <= 0) {
+            return crc;
+        }
+
+        return multiply(operator(X2N_INVERSE_TABLE, length2), crc ^ crc2);
+    }
+
+    private static int operator(int[] table, long length) {
+        int operator = ONE;
+        for (int n = 3; length != 0; length >>>= 1, n++) {
+            if ((length & 1) != 0) {
+                operator = multiply(table[n & (Integer.SIZE - 1)], operator);
+            }
+        }
+        return operator;
+    }
+
+    private static int multiply(int a, int b) {
+        int product = 0;
+        for (int mask = ONE; ; mask >>>= 1) {
+            if ((a & mask) != 0) {
+                product ^= b;
+                if ((a & (mask - 1)) == 0) {
+                    return product;
+                }
+            }
+            b = (b & 1) != 0 ? (b >>> 1) ^ POLYNOMIAL : b >>> 1;
+        }
+    }
+}
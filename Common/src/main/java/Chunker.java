@@ -0,0 +1,78 @@
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class Chunker {
+    public static final int MIN_CHUNK_SIZE = 16 * 1024;
+    public static final int MAX_CHUNK_SIZE = 256 * 1024;
+    public static final int HASH_SIZE = 32;
+
+    private static final long BOUNDARY_MASK = (1L << 16) - 1;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4E657453746F7265L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    public record Chunk(long offset, int length, byte[] hash) {
+        public String name() {
+            return ByteBufUtil.hexDump(hash);
+        }
+    }
+
+    public static List<Chunk> split(Path path) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        MessageDigest digest = newDigest();
+
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long chunkOffset = 0;
+            int chunkSize = 0;
+            long hash = 0;
+
+            for (int read; (read = inputStream.read(buffer)) != -1; ) {
+                int digestFrom = 0;
+                for (int i = 0; i < read; i++) {
+                    hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+                    chunkSize++;
+
+                    if (chunkSize >= MAX_CHUNK_SIZE || (chunkSize >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0)) {
+                        digest.update(buffer, digestFrom, i + 1 - digestFrom);
+                        digestFrom = i + 1;
+
+                        chunks.add(new Chunk(chunkOffset, chunkSize, digest.digest()));
+                        chunkOffset += chunkSize;
+                        chunkSize = 0;
+                        hash = 0;
+                    }
+                }
+                digest.update(buffer, digestFrom, read - digestFrom);
+            }
+
+            if (chunkSize > 0) {
+                chunks.add(new Chunk(chunkOffset, chunkSize, digest.digest()));
+            }
+        }
+        return chunks;
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
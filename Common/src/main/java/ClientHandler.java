@@ -0,0 +1,65 @@
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class ClientHandler extends SimpleChannelInboundHandler<Message> {
+    private final Map<Long, PendingRequest> pendingRequests;
+
+    public ClientHandler(Map<Long, PendingRequest> pendingRequests) {
+        this.pendingRequests = pendingRequests;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Message msg) {
+        switch (msg.command()) {
+            case Message.REPORT_COMMAND -> reportCase(msg);
+            case Message.IMPORT_COMMAND, Message.QUEUE_COMMAND, Message.SIGNATURE_COMMAND,
+                 Message.GET_BATCH_COMMAND, Message.DELETE_BATCH_COMMAND, Message.SYNC_COMMAND -> partCase(msg);
+            case Message.CRUSH_COMMAND -> crushCase(msg);
+        }
+    }
+
+    private void reportCase(Message reportMsg) {
+        PendingRequest request = pendingRequests.remove(reportMsg.id());
+        if (request != null) {
+            request.response().complete(reportMsg.retain());
+        }
+    }
+
+    private void partCase(Message partMsg) {
+        PendingRequest request = pendingRequests.get(partMsg.id());
+        if (request == null || request.partHandler() == null) {
+            return;
+        }
+
+        try {
+            request.partHandler().accept(partMsg);
+        } catch (IOException e) {
+            pendingRequests.remove(partMsg.id());
+            request.response().completeExceptionally(e);
+        }
+    }
+
+    private void crushCase(Message crushMsg) {
+        PendingRequest request = pendingRequests.remove(crushMsg.id());
+        if (request != null) {
+            request.response().completeExceptionally(new RuntimeException("Ошибка выполнения на сервере"));
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        IOException cause = new IOException("Соединение с сервером разорвано");
+        pendingRequests.values().forEach(request -> request.response().completeExceptionally(cause));
+        pendingRequests.clear();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        pendingRequests.values().forEach(request -> request.response().completeExceptionally(cause));
+        pendingRequests.clear();
+        ctx.close();
+    }
+}
@@ -0,0 +1,117 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class CompressionCodec extends MessageToMessageCodec<Message, Message> {
+    public static final byte FEATURE = 0x01;
+
+    private static final int MIN_COMPRESSED_SIZE = 512;
+    private static final int MAX_SKIPPED_NUM = 64;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+
+    private final int maxDataSize;
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater(true);
+
+    private int skippedNum;
+    private int failedNum;
+
+    public CompressionCodec(int maxDataSize, int level) {
+        this.maxDataSize = maxDataSize;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Message msg, List<Object> out) {
+        ByteBuf data = msg.data();
+        ByteBuf payload = null;
+        if (data.readableBytes() >= MIN_COMPRESSED_SIZE) {
+            if (skippedNum > 0) {
+                skippedNum--;
+            } else {
+                payload = deflate(ctx, data);
+            }
+        }
+        if (payload == null) {
+            payload = ctx.alloc().compositeBuffer(2).addComponents(true, Unpooled.wrappedBuffer(new byte[]{RAW}), data.retain());
+        }
+        out.add(new Message(msg.id(), msg.command(), msg.path(), msg.offset(), payload));
+    }
+
+    private ByteBuf deflate(ChannelHandlerContext ctx, ByteBuf data) {
+        int length = data.readableBytes();
+        ByteBuf compressed = ctx.alloc().heapBuffer(length);
+        compressed.writeByte(DEFLATED);
+        MessageEncoder.writeVarLong(compressed, length);
+
+        deflater.reset();
+        deflater.setInput(data.nioBuffer());
+        deflater.finish();
+        ByteBuffer output = compressed.nioBuffer(compressed.writerIndex(), length - compressed.writerIndex());
+        while (!deflater.finished() && output.hasRemaining()) {
+            deflater.deflate(output);
+        }
+
+        if (!deflater.finished()) {
+            compressed.release();
+            failedNum++;
+            skippedNum = Math.min(MAX_SKIPPED_NUM, (1 << Math.min(failedNum, 16)) - 1);
+            return null;
+        }
+        failedNum = 0;
+        compressed.writerIndex(compressed.writerIndex() + output.position());
+        return compressed;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, Message msg, List<Object> out) {
+        ByteBuf data = msg.data();
+        if (data.readByte() == RAW) {
+            out.add(msg.retain());
+            return;
+        }
+
+        long length = MessageDecoder.readVarLong(data);
+        if (length <= 0 || length > maxDataSize) {
+            throw new CorruptedFrameException("Некорректный размер сжатых данных");
+        }
+
+        ByteBuf inflated = ctx.alloc().heapBuffer((int) length);
+        try {
+            inflater.reset();
+            inflater.setInput(data.nioBuffer());
+            ByteBuffer output = inflated.nioBuffer(0, (int) length);
+            while (!inflater.finished() && output.hasRemaining()) {
+                if (inflater.inflate(output) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+
+            if (!inflater.finished() || output.hasRemaining()) {
+                throw new DataFormatException("Размер распакованных данных не совпадает с заявленным");
+            }
+            inflated.writerIndex((int) length);
+        } catch (DataFormatException e) {
+            inflated.release();
+            throw new CorruptedFrameException("Ошибка при распаковке данных", e);
+        }
+        out.add(new Message(msg.id(), msg.command(), msg.path(), msg.offset(), inflated));
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        deflater.end();
+        inflater.end();
+        super.handlerRemoved(ctx);
+    }
+}
@@ -0,0 +1,241 @@
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Delta {
+    public static final int STRONG_HASH_SIZE = 16;
+    public static final int SIGNATURE_ENTRY_SIZE = Integer.BYTES + STRONG_HASH_SIZE;
+
+    private static final int MIN_BLOCK_SIZE = 2 * 1024;
+    public static final int MAX_BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_LITERAL_SIZE = 64 * 1024;
+
+    private static final byte COPY_OP = 0;
+    private static final byte LITERAL_OP = 1;
+
+    public interface Sink {
+        void copy(int block, int count) throws IOException;
+
+        void literal(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    public interface BlockSource {
+        void copy(long offset, long length) throws IOException;
+
+        void write(ByteBuf data) throws IOException;
+    }
+
+    public record Signature(int blockSize, int[] weak, byte[][] strong) {
+        public int blocksNum() {
+            return weak.length;
+        }
+    }
+
+    public static int blockSize(long fileSize) {
+        int blockSize = (int) Math.sqrt(fileSize) & ~(MIN_BLOCK_SIZE - 1);
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, blockSize));
+    }
+
+    public static void writeSignature(InputStream inputStream, int blockSize, EntrySink sink) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] block = new byte[blockSize];
+        for (int read; (read = inputStream.readNBytes(block, 0, blockSize)) > 0; ) {
+            digest.update(block, 0, read);
+            sink.accept(weakChecksum(block, 0, read), Arrays.copyOf(digest.digest(), STRONG_HASH_SIZE));
+        }
+    }
+
+    public interface EntrySink {
+        void accept(int weak, byte[] strong) throws IOException;
+    }
+
+    public static Signature readSignature(int blockSize, ByteBuf entries) {
+        int blocksNum = entries.readableBytes() / SIGNATURE_ENTRY_SIZE;
+        int[] weak = new int[blocksNum];
+        byte[][] strong = new byte[blocksNum][STRONG_HASH_SIZE];
+        for (int i = 0; i < blocksNum; i++) {
+            weak[i] = entries.readInt();
+            entries.readBytes(strong[i]);
+        }
+        return new Signature(blockSize, weak, strong);
+    }
+
+    public static void diff(InputStream inputStream, Signature signature, Sink sink) throws IOException {
+        int blockSize = signature.blockSize();
+        Map<Integer, List<Integer>> blocksByWeak = new HashMap<>();
+        boolean[] weakFilter = new boolean[1 << 16];
+        for (int i = 0; i < signature.blocksNum(); i++) {
+            blocksByWeak.computeIfAbsent(signature.weak()[i], weak -> new ArrayList<>()).add(i);
+            weakFilter[filterIndex(signature.weak()[i])] = true;
+        }
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[Math.max(4 * blockSize, 1024 * 1024)];
+        int literalStart = 0;
+        int start = 0;
+        int end = 0;
+        boolean isEof = false;
+        int a = 0;
+        int b = 0;
+        boolean isRolling = false;
+
+        int pendingBlock = -1;
+        int pendingCount = 0;
+
+        while (true) {
+            if (end - start < blockSize && !isEof) {
+                if (start > literalStart) {
+                    flushCopy(sink, pendingBlock, pendingCount);
+                    pendingCount = 0;
+                    sink.literal(buffer, literalStart, start - literalStart);
+                }
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+                literalStart = 0;
+
+                int read = inputStream.readNBytes(buffer, end, buffer.length - end);
+                isEof = read < buffer.length - end;
+                end += read;
+            }
+            if (end - start < blockSize) {
+                break;
+            }
+
+            if (!isRolling) {
+                int checksum = weakChecksum(buffer, start, blockSize);
+                a = checksum & 0xFFFF;
+                b = checksum >>> 16;
+                isRolling = true;
+            }
+
+            int weak = a | (b << 16);
+            int match = weakFilter[filterIndex(weak)] ? findBlock(blocksByWeak, signature, digest, weak, buffer, start, blockSize) : -1;
+            if (match >= 0) {
+                if (start > literalStart) {
+                    flushCopy(sink, pendingBlock, pendingCount);
+                    pendingCount = 0;
+                    sink.literal(buffer, literalStart, start - literalStart);
+                }
+                if (pendingCount > 0 && pendingBlock + pendingCount == match) {
+                    pendingCount++;
+                } else {
+                    flushCopy(sink, pendingBlock, pendingCount);
+                    pendingBlock = match;
+                    pendingCount = 1;
+                }
+
+                start += blockSize;
+                literalStart = start;
+                isRolling = false;
+                continue;
+            }
+
+            if (start - literalStart >= MAX_LITERAL_SIZE) {
+                flushCopy(sink, pendingBlock, pendingCount);
+                pendingCount = 0;
+                sink.literal(buffer, literalStart, start - literalStart);
+                literalStart = start;
+            }
+
+            if (start + blockSize < end) {
+                int out = buffer[start] & 0xFF;
+                int in = buffer[start + blockSize] & 0xFF;
+                a = (a - out + in) & 0xFFFF;
+                b = (b - blockSize * out + a) & 0xFFFF;
+            } else {
+                isRolling = false;
+            }
+            start++;
+        }
+
+        if (end > literalStart) {
+            flushCopy(sink, pendingBlock, pendingCount);
+            pendingCount = 0;
+            sink.literal(buffer, literalStart, end - literalStart);
+        }
+        flushCopy(sink, pendingBlock, pendingCount);
+    }
+
+    private static int filterIndex(int weak) {
+        return (weak ^ (weak >>> 16)) & 0xFFFF;
+    }
+
+    private static void flushCopy(Sink sink, int block, int count) throws IOException {
+        if (count > 0) {
+            sink.copy(block, count);
+        }
+    }
+
+    private static int findBlock(Map<Integer, List<Integer>> blocksByWeak, Signature signature, MessageDigest digest,
+                                 int weak, byte[] buffer, int offset, int length) {
+        List<Integer> candidates = blocksByWeak.get(weak);
+        if (candidates == null) {
+            return -1;
+        }
+
+        digest.update(buffer, offset, length);
+        byte[] strong = Arrays.copyOf(digest.digest(), STRONG_HASH_SIZE);
+        for (int block : candidates) {
+            if (Arrays.equals(signature.strong()[block], strong)) {
+                return block;
+            }
+        }
+        return -1;
+    }
+
+    public static void writeCopy(ByteBuf out, int block, int count) {
+        out.writeByte(COPY_OP);
+        MessageEncoder.writeVarLong(out, block);
+        MessageEncoder.writeVarLong(out, count);
+    }
+
+    public static void writeLiteral(ByteBuf out, byte[] buffer, int offset, int length) {
+        out.writeByte(LITERAL_OP);
+        MessageEncoder.writeVarLong(out, length);
+        out.writeBytes(buffer, offset, length);
+    }
+
+    public static void apply(ByteBuf ops, int blockSize, BlockSource source) throws IOException {
+        while (ops.isReadable()) {
+            switch (ops.readByte()) {
+                case COPY_OP -> {
+                    long block = MessageDecoder.readVarLong(ops);
+                    long count = MessageDecoder.readVarLong(ops);
+                    source.copy(block * blockSize, count * blockSize);
+                }
+                case LITERAL_OP -> {
+                    int length = (int) MessageDecoder.readVarLong(ops);
+                    source.write(ops.readSlice(length));
+                }
+                default -> throw new IOException("Некорректная инструкция обновления файла");
+            }
+        }
+    }
+
+    public static int weakChecksum(byte[] buffer, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            a += buffer[offset + i] & 0xFF;
+            b += (length - i) * (buffer[offset + i] & 0xFF);
+        }
+        return (a & 0xFFFF) | ((b & 0xFFFF) << 16);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
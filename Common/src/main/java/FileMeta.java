@@ -0,0 +1,19 @@
+public record FileMeta(long size, long modified, int crc, byte[] hash, int[] rangeCrcs) {
+    public static final int RANGE_SIZE = 1024 * 1024;
+
+    public static int rangesNum(long size) {
+        return (int) ((size + RANGE_SIZE - 1) / RANGE_SIZE);
+    }
+
+    public boolean hasRangeCrc(long offset, long length) {
+        return offset % RANGE_SIZE == 0 && (length % RANGE_SIZE == 0 || offset + length == size) && offset + length <= size;
+    }
+
+    public int rangeCrc(long offset, long length) {
+        int crc = 0;
+        for (long position = offset; position < offset + length; position += RANGE_SIZE) {
+            crc = Checksum.combine(crc, rangeCrcs[(int) (position / RANGE_SIZE)], Math.min(RANGE_SIZE, size - position));
+        }
+        return crc;
+    }
+}
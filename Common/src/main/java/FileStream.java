@@ -0,0 +1,43 @@
+import io.netty.channel.FileRegion;
+import io.netty.util.ReferenceCounted;
+
+public record FileStream(long id, String command, String path, long offset, FileRegion region) implements ReferenceCounted {
+    @Override
+    public int refCnt() {
+        return region.refCnt();
+    }
+
+    @Override
+    public FileStream retain() {
+        region.retain();
+        return this;
+    }
+
+    @Override
+    public FileStream retain(int increment) {
+        region.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FileStream touch() {
+        region.touch();
+        return this;
+    }
+
+    @Override
+    public FileStream touch(Object hint) {
+        region.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return region.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return region.release(decrement);
+    }
+}
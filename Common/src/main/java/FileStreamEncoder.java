@@ -0,0 +1,18 @@
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+@ChannelHandler.Sharable
+public class FileStreamEncoder extends MessageToMessageEncoder<FileStream> {
+    @Override
+    protected void encode(ChannelHandlerContext ctx, FileStream stream, List<Object> out) {
+        long streamSize = stream.region().count();
+
+        out.add(MessageEncoder.encodeHeader(ctx, stream.command(), stream.id(), stream.path(), stream.offset(), 0, streamSize));
+        if (streamSize > 0) {
+            out.add(stream.region().retain());
+        }
+    }
+}
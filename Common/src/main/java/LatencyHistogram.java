@@ -0,0 +1,81 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    public record Snapshot(long count, long meanMicros, long p50Micros, long p90Micros, long p99Micros,
+                           long p999Micros, long maxMicros) {
+    }
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS_NUM = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_NUM = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_NUM;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_NUM);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long percentile(double percentile) {
+        long[] counts = new long[BUCKETS_NUM];
+        long total = 0;
+        for (int i = 0; i < BUCKETS_NUM; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        for (int i = 0; i < BUCKETS_NUM; i++) {
+            rank -= counts[i];
+            if (rank <= 0) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public Snapshot snapshot() {
+        long countNum = count.sum();
+        return new Snapshot(countNum, countNum == 0 ? 0 : micros(sum.sum() / countNum),
+                micros(percentile(50)), micros(percentile(90)), micros(percentile(99)), micros(percentile(99.9)),
+                micros(max.get()));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS_NUM) {
+            return (int) value;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS_NUM - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_NUM + subBucket;
+    }
+
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS_NUM) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS_NUM - 1;
+        long lowest = (long) (SUB_BUCKETS_NUM + bucket % SUB_BUCKETS_NUM) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,154 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCounted;
+
+import java.util.List;
+
+public record Message(long id, String command, String path, long offset, ByteBuf data) implements ReferenceCounted {
+    public static final int MAX_OBJECT_SIZE = 1024 * 1024;
+    public static final int MAX_DATA_SIZE = MAX_OBJECT_SIZE - 2 * 1024;
+    public static final int MAX_LIST_SIZE = 1000;
+
+    public static final int SERVER_PORT = 10000;
+
+    public static final int SUCCESS_CODE = 0;
+    public static final int FAILURE_CODE = 1;
+    public static final int REDIRECT_CODE = 2;
+    public static final long REPLICA_LOGIN = 1;
+
+    public static final String PUT_COMMAND = "put";
+    public static final String GET_COMMAND = "get";
+    public static final String DELETE_COMMAND = "del";
+
+    public static final String EXPORT_COMMAND = "exp";
+    public static final String IMPORT_COMMAND = "imp";
+    public static final String COMMIT_COMMAND = "com";
+
+    public static final String REPORT_COMMAND = "rep";
+    public static final String CRUSH_COMMAND = "cr";
+
+    public static final String CONNECT_COMMAND = "con";
+    public static final String QUEUE_COMMAND = "que";
+    public static final String USER_COMMAND = "usr";
+    public static final String LOGIN_COMMAND = "log";
+    public static final String REGISTER_COMMAND = "reg";
+    public static final String ATTACH_COMMAND = "att";
+
+    public static final String MISSING_COMMAND = "mis";
+    public static final String CHUNK_COMMAND = "chk";
+    public static final String MANIFEST_COMMAND = "man";
+
+    public static final String UPDATE_COMMAND = "upd";
+    public static final String SIGNATURE_COMMAND = "sig";
+    public static final String DELTA_COMMAND = "dlt";
+
+    public static final String LIST_COMMAND = "ls";
+    public static final String STAT_COMMAND = "st";
+
+    public static final String PUT_BATCH_COMMAND = "mput";
+    public static final String GET_BATCH_COMMAND = "mget";
+    public static final String DELETE_BATCH_COMMAND = "mdel";
+    public static final String SYNC_COMMAND = "sync";
+
+    public static final String STATS_COMMAND = "stats";
+
+    public static final String ROUTE_COMMAND = "rt";
+    public static final String PEER_COMMAND = "peer";
+    public static final String REPLICA_USER_COMMAND = "rusr";
+    public static final String REPLICA_CHECK_COMMAND = "rchk";
+    public static final String REPLICA_PUT_COMMAND = "rput";
+    public static final String REPLICA_COMMIT_COMMAND = "rcom";
+    public static final String REPLICA_DELETE_COMMAND = "rdel";
+
+    private static final List<String> OPCODES = List.of(
+            PUT_COMMAND, GET_COMMAND, DELETE_COMMAND,
+            EXPORT_COMMAND, IMPORT_COMMAND, COMMIT_COMMAND,
+            REPORT_COMMAND, CRUSH_COMMAND,
+            CONNECT_COMMAND, QUEUE_COMMAND, USER_COMMAND, LOGIN_COMMAND, REGISTER_COMMAND, ATTACH_COMMAND,
+            MISSING_COMMAND, CHUNK_COMMAND, MANIFEST_COMMAND,
+            UPDATE_COMMAND, SIGNATURE_COMMAND, DELTA_COMMAND,
+            LIST_COMMAND, STAT_COMMAND,
+            PUT_BATCH_COMMAND, GET_BATCH_COMMAND, DELETE_BATCH_COMMAND, SYNC_COMMAND,
+            STATS_COMMAND,
+            ROUTE_COMMAND, PEER_COMMAND,
+            REPLICA_USER_COMMAND, REPLICA_CHECK_COMMAND, REPLICA_PUT_COMMAND, REPLICA_COMMIT_COMMAND, REPLICA_DELETE_COMMAND
+    );
+
+    public Message(long id, String command, String path) {
+        this(id, command, path, 0, Unpooled.EMPTY_BUFFER);
+    }
+
+    public Message(long id, String command, String path, ByteBuf data) {
+        this(id, command, path, 0, data);
+    }
+
+    public static Message report(long id, int code) {
+        return new Message(id, REPORT_COMMAND, null, Unpooled.wrappedBuffer(new byte[]{(byte) code}));
+    }
+
+    public static Message report(long id, int code, ByteBuf details) {
+        return new Message(id, REPORT_COMMAND, null, Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(new byte[]{(byte) code}), details));
+    }
+
+    public static byte opcode(String command) {
+        int opcode = OPCODES.indexOf(command);
+        if (opcode < 0) {
+            throw new IllegalArgumentException("Неизвестная команда " + command);
+        }
+        return (byte) opcode;
+    }
+
+    public static String command(byte opcode) {
+        if (opcode < 0 || opcode >= OPCODES.size()) {
+            throw new IllegalArgumentException("Неизвестный код команды " + opcode);
+        }
+        return OPCODES.get(opcode);
+    }
+
+    public int code() {
+        return data.getByte(data.readerIndex());
+    }
+
+    public ByteBuf details() {
+        return data.slice(data.readerIndex() + 1, data.readableBytes() - 1);
+    }
+
+    @Override
+    public int refCnt() {
+        return data.refCnt();
+    }
+
+    @Override
+    public Message retain() {
+        data.retain();
+        return this;
+    }
+
+    @Override
+    public Message retain(int increment) {
+        data.retain(increment);
+        return this;
+    }
+
+    @Override
+    public Message touch() {
+        data.touch();
+        return this;
+    }
+
+    @Override
+    public Message touch(Object hint) {
+        data.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return data.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return data.release(decrement);
+    }
+}
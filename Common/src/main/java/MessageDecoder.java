@@ -0,0 +1,81 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+import java.nio.charset.StandardCharsets;
+
+public class MessageDecoder extends LengthFieldBasedFrameDecoder {
+    private long streamId;
+    private String streamCommand;
+    private String streamPath;
+    private long streamOffset;
+    private long streamRemaining;
+
+    public MessageDecoder(int maxFrameSize) {
+        super(maxFrameSize, 0, MessageEncoder.LENGTH_FIELD_SIZE, 0, MessageEncoder.LENGTH_FIELD_SIZE);
+    }
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        if (streamRemaining > 0) {
+            return decodeStreamPart(in);
+        }
+
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
+        }
+
+        try {
+            byte opcode = frame.readByte();
+            String command = Message.command((byte) (opcode & ~MessageEncoder.STREAM_FLAG));
+            long id = readVarLong(frame);
+
+            int pathSize = (int) readVarLong(frame);
+            String path = null;
+            if (pathSize > 0) {
+                path = frame.toString(frame.readerIndex(), pathSize, StandardCharsets.UTF_8);
+                frame.skipBytes(pathSize);
+            }
+            long offset = readVarLong(frame);
+
+            if ((opcode & MessageEncoder.STREAM_FLAG) != 0) {
+                streamId = id;
+                streamCommand = command;
+                streamPath = path;
+                streamOffset = offset;
+                streamRemaining = readVarLong(frame);
+                return streamRemaining > 0 ? decodeStreamPart(in) : null;
+            }
+            return new Message(id, command, path, offset, frame.retainedSlice());
+        } finally {
+            frame.release();
+        }
+    }
+
+    private Message decodeStreamPart(ByteBuf in) {
+        int partSize = (int) Math.min(in.readableBytes(), streamRemaining);
+        if (partSize == 0) {
+            return null;
+        }
+
+        Message part = new Message(streamId, streamCommand, streamPath, streamOffset, in.readRetainedSlice(partSize));
+        streamOffset += partSize;
+        streamRemaining -= partSize;
+
+        return part;
+    }
+
+    public static long readVarLong(ByteBuf buf) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buf.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("Некорректное число переменной длины");
+    }
+}
@@ -0,0 +1,54 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+@ChannelHandler.Sharable
+public class MessageEncoder extends MessageToMessageEncoder<Message> {
+    public static final int LENGTH_FIELD_SIZE = Integer.BYTES;
+    public static final int STREAM_FLAG = 0x80;
+
+    public static final int MAX_VARLONG_SIZE = 10;
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Message msg, List<Object> out) {
+        int payloadSize = msg.data().readableBytes();
+
+        out.add(encodeHeader(ctx, msg.command(), msg.id(), msg.path(), msg.offset(), payloadSize, -1));
+        if (payloadSize > 0) {
+            out.add(msg.data().retain());
+        }
+    }
+
+    public static ByteBuf encodeHeader(ChannelHandlerContext ctx, String command, long id, String path, long offset,
+                                       int payloadSize, long streamSize) {
+        int pathSize = path == null ? 0 : ByteBufUtil.utf8Bytes(path);
+
+        ByteBuf header = ctx.alloc().ioBuffer(LENGTH_FIELD_SIZE + 1 + 4 * MAX_VARLONG_SIZE + pathSize);
+        header.writeInt(0);
+        header.writeByte(streamSize < 0 ? Message.opcode(command) : Message.opcode(command) | STREAM_FLAG);
+        writeVarLong(header, id);
+        writeVarLong(header, pathSize);
+        if (pathSize > 0) {
+            ByteBufUtil.writeUtf8(header, path);
+        }
+        writeVarLong(header, offset);
+        if (streamSize >= 0) {
+            writeVarLong(header, streamSize);
+        }
+        header.setInt(0, header.readableBytes() - LENGTH_FIELD_SIZE + payloadSize);
+
+        return header;
+    }
+
+    public static void writeVarLong(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte((int) value);
+    }
+}
@@ -0,0 +1,9 @@
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public record PendingRequest(CompletableFuture<Message> response, PartHandler partHandler) {
+    @FunctionalInterface
+    public interface PartHandler {
+        void accept(Message part) throws IOException;
+    }
+}
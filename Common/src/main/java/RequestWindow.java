@@ -0,0 +1,44 @@
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+public class RequestWindow {
+    private final int size;
+    private final Semaphore permits;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public RequestWindow(int size) {
+        this.size = size;
+        this.permits = new Semaphore(size);
+    }
+
+    public boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    public void submit(Supplier<CompletableFuture<Message>> request) throws InterruptedException {
+        permits.acquire();
+        request.get().whenComplete((response, e) -> {
+            if (e != null) {
+                failure.compareAndSet(null, e);
+            } else {
+                if (response.code() != Message.SUCCESS_CODE) {
+                    failure.compareAndSet(null, new IOException("Сервер отклонил запрос"));
+                }
+                response.release();
+            }
+            permits.release();
+        });
+    }
+
+    public void await() throws InterruptedException, IOException {
+        permits.acquire(size);
+        permits.release(size);
+
+        if (failure.get() != null) {
+            throw new IOException("Ошибка при обмене данными с сервером", failure.get());
+        }
+    }
+}
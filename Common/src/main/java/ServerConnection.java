@@ -0,0 +1,71 @@
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.*;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ServerConnection implements AutoCloseable {
+    private final Map<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong lastRequestId = new AtomicLong();
+
+    private final Channel channel;
+
+    public ServerConnection(EventLoopGroup workerGroup, String host, int port) throws InterruptedException {
+        Bootstrap sender = new Bootstrap();
+        sender.group(workerGroup);
+        sender.channel(Transport.channelClass());
+        sender.option(ChannelOption.SO_KEEPALIVE, true);
+        sender.option(ChannelOption.TCP_NODELAY, true);
+        sender.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        sender.handler(new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(
+                        new MessageEncoder(),
+                        new MessageDecoder(Message.MAX_OBJECT_SIZE),
+                        new ClientHandler(pendingRequests)
+                );
+            }
+        });
+
+        channel = sender.connect(host, port).sync().channel();
+    }
+
+    public CompletableFuture<Message> request(String command, String path, ByteBuf data) {
+        return request(command, path, 0, data, null);
+    }
+
+    public CompletableFuture<Message> request(String command, String path, long offset, ByteBuf data,
+                                              PendingRequest.PartHandler partHandler) {
+        long id = lastRequestId.incrementAndGet();
+
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        pendingRequests.put(id, new PendingRequest(response, partHandler));
+
+        channel.writeAndFlush(new Message(id, command, path, offset, data)).addListener(future -> {
+            if (!future.isSuccess()) {
+                pendingRequests.remove(id);
+                response.completeExceptionally(future.cause());
+            }
+        });
+        return response;
+    }
+
+    public void enableCompression(int level) {
+        channel.pipeline().addBefore(channel.pipeline().context(ClientHandler.class).name(), null,
+                new CompressionCodec(Message.MAX_OBJECT_SIZE, level));
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close().sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
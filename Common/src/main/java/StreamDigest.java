@@ -0,0 +1,142 @@
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+public class StreamDigest {
+    private final MessageDigest digest = Chunker.newDigest();
+    private final CRC32C crc = new CRC32C();
+    private int[] rangeCrcs = new int[16];
+    private int rangesNum;
+    private int fileCrc;
+    private int crcPrefix;
+    private long crcOffset;
+    private long size;
+    private boolean isBroken;
+
+    public void update(long offset, ByteBuf data) {
+        if (offset != size) {
+            isBroken = true;
+            return;
+        }
+
+        for (ByteBuffer buffer : data.nioBuffers()) {
+            update(buffer);
+        }
+    }
+
+    public void update(long offset, ByteBuf data, int dataCrc) {
+        if (offset != size) {
+            isBroken = true;
+            return;
+        }
+
+        for (ByteBuffer buffer : data.nioBuffers()) {
+            digest.update(buffer);
+        }
+        for (int index = data.readerIndex(), length = data.readableBytes(); length > 0; ) {
+            int head = (int) Math.min(length, FileMeta.RANGE_SIZE - size % FileMeta.RANGE_SIZE);
+            int tailCrc = 0;
+            int headCrc = dataCrc;
+            if (head < length / 2) {
+                headCrc = Checksum.crc(data.slice(index, head));
+                tailCrc = Checksum.combine(headCrc, dataCrc, length - head);
+            } else if (head < length) {
+                tailCrc = Checksum.crc(data.slice(index + head, length - head));
+                headCrc = Checksum.truncate(dataCrc, tailCrc, length - head);
+            }
+            crcPrefix = Checksum.combine(rangeCrc(), headCrc, head);
+            crc.reset();
+            size += head;
+            crcOffset = size;
+            dataCrc = tailCrc;
+            index += head;
+            length -= head;
+            closeFullRange();
+        }
+    }
+
+    public void update(ByteBuffer buffer) {
+        digest.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            int head = (int) Math.min(buffer.remaining(), FileMeta.RANGE_SIZE - size % FileMeta.RANGE_SIZE);
+            crc.update(buffer.slice(buffer.position(), head));
+            buffer.position(buffer.position() + head);
+            size += head;
+            closeFullRange();
+        }
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        digest.update(buffer, offset, length);
+        while (length > 0) {
+            int head = (int) Math.min(length, FileMeta.RANGE_SIZE - size % FileMeta.RANGE_SIZE);
+            crc.update(buffer, offset, head);
+            offset += head;
+            length -= head;
+            size += head;
+            closeFullRange();
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public FileMeta finish(long modified) {
+        int[] crcs = Arrays.copyOf(rangeCrcs, FileMeta.rangesNum(size));
+        int crc = fileCrc;
+        if (rangesNum < crcs.length) {
+            crcs[rangesNum] = rangeCrc();
+            crc = Checksum.combine(crc, crcs[rangesNum], size - (long) rangesNum * FileMeta.RANGE_SIZE);
+        }
+        return new FileMeta(size, modified, crc, digest.digest(), crcs);
+    }
+
+    public FileMeta finish(Path file) throws IOException {
+        if (isBroken || size != Files.size(file)) {
+            return describe(file);
+        }
+        return finish(Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private int rangeCrc() {
+        return Checksum.combine(crcPrefix, (int) crc.getValue(), size - crcOffset);
+    }
+
+    private void closeFullRange() {
+        if (size % FileMeta.RANGE_SIZE != 0) {
+            return;
+        }
+
+        if (rangesNum == rangeCrcs.length) {
+            rangeCrcs = Arrays.copyOf(rangeCrcs, 2 * rangesNum);
+        }
+        rangeCrcs[rangesNum] = rangeCrc();
+        fileCrc = Checksum.combine(fileCrc, rangeCrcs[rangesNum++], FileMeta.RANGE_SIZE);
+        crc.reset();
+        crcPrefix = 0;
+        crcOffset = size;
+    }
+
+    public static FileMeta describe(InputStream inputStream, long size, long modified) throws IOException {
+        StreamDigest digest = new StreamDigest();
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = inputStream.read(buffer)) > 0; ) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.finish(modified);
+    }
+
+    public static FileMeta describe(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return describe(inputStream, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        }
+    }
+}
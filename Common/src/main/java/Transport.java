@@ -0,0 +1,51 @@
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+public class Transport {
+    public static final String EPOLL_TRANSPORT = "epoll";
+    public static final String NIO_TRANSPORT = "nio";
+
+    private static final String TRANSPORT = System.getProperty("netstorage.transport", "auto");
+    private static final boolean EPOLL_ENABLED = isEpollEnabled();
+
+    private static boolean isEpollEnabled() {
+        switch (TRANSPORT) {
+            case EPOLL_TRANSPORT -> {
+                if (!Epoll.isAvailable()) {
+                    throw new IllegalStateException("Транспорт epoll недоступен", Epoll.unavailabilityCause());
+                }
+                return true;
+            }
+            case NIO_TRANSPORT -> {
+                return false;
+            }
+            default -> {
+                return Epoll.isAvailable();
+            }
+        }
+    }
+
+    public static String name() {
+        return EPOLL_ENABLED ? EPOLL_TRANSPORT : NIO_TRANSPORT;
+    }
+
+    public static EventLoopGroup newEventLoopGroup(int threadsNum) {
+        return EPOLL_ENABLED ? new EpollEventLoopGroup(threadsNum) : new NioEventLoopGroup(threadsNum);
+    }
+
+    public static Class<? extends ServerChannel> serverChannelClass() {
+        return EPOLL_ENABLED ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends SocketChannel> channelClass() {
+        return EPOLL_ENABLED ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+}
@@ -0,0 +1,81 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumTest {
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    @Test
+    void combinesAdjacentRanges() {
+        byte[] data = random(100_000);
+        int expected = crc(data, 0, data.length);
+        for (int split : new int[]{0, 1, 4095, 65536, 99_999, 100_000}) {
+            int combined = Checksum.combine(crc(data, 0, split), crc(data, split, data.length - split), data.length - split);
+            assertEquals(expected, combined, "split " + split);
+        }
+    }
+
+    @Test
+    void truncatesTrailingRange() {
+        byte[] data = random(100_000);
+        int whole = crc(data, 0, data.length);
+        for (int split : new int[]{0, 1, 7, 4096, data.length - 1, data.length}) {
+            int truncated = Checksum.truncate(whole, crc(data, split, data.length - split), data.length - split);
+            assertEquals(crc(data, 0, split), truncated, "split " + split);
+        }
+    }
+
+    @Test
+    void combinesManyRanges() {
+        byte[] data = random(1_000_003);
+        int combined = 0;
+        for (int offset = 0; offset < data.length; offset += 65536) {
+            int length = Math.min(65536, data.length - offset);
+            combined = Checksum.combine(combined, crc(data, offset, length), length);
+        }
+        assertEquals(crc(data, 0, data.length), combined);
+    }
+
+    @Test
+    void computesCrcOfCompositeBuffer() {
+        byte[] data = random(10_000);
+        ByteBuf composite = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(data, 0, 3000),
+                Unpooled.directBuffer().writeBytes(data, 3000, 7000));
+        assertEquals(crc(data, 0, data.length), Checksum.crc(composite));
+        composite.release();
+    }
+
+    @Test
+    void unsealsSealedData() {
+        byte[] data = random(5000);
+        ByteBuf sealed = Checksum.seal(Unpooled.buffer().writeBytes(data));
+        assertEquals(crc(data, 0, data.length), Checksum.sealed(sealed));
+
+        ByteBuf payload = Checksum.unseal(sealed);
+        assertNotNull(payload);
+        assertEquals(Unpooled.wrappedBuffer(data), payload);
+    }
+
+    @Test
+    void rejectsCorruptedData() {
+        ByteBuf sealed = Checksum.seal(Unpooled.buffer().writeBytes(random(5000)));
+        sealed.setByte(100, sealed.getByte(100) ^ 1);
+        assertNull(Checksum.unseal(sealed));
+        assertNull(Checksum.unseal(Unpooled.wrappedBuffer(new byte[Checksum.SIZE - 1])));
+    }
+}
@@ -0,0 +1,131 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaTest {
+    private static final int BLOCK_SIZE = 2048;
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static ByteBuf diff(byte[] base, byte[] target, int[] literalBytes) throws IOException {
+        ByteBuf entries = Unpooled.buffer();
+        Delta.writeSignature(new ByteArrayInputStream(base), BLOCK_SIZE, (weak, strong) -> entries.writeInt(weak).writeBytes(strong));
+        Delta.Signature signature = Delta.readSignature(BLOCK_SIZE, entries);
+
+        ByteBuf ops = Unpooled.buffer();
+        Delta.diff(new ByteArrayInputStream(target), signature, new Delta.Sink() {
+            @Override
+            public void copy(int block, int count) {
+                Delta.writeCopy(ops, block, count);
+            }
+
+            @Override
+            public void literal(byte[] buffer, int offset, int length) {
+                literalBytes[0] += length;
+                Delta.writeLiteral(ops, buffer, offset, length);
+            }
+        });
+        return ops;
+    }
+
+    private static byte[] apply(byte[] base, ByteBuf ops) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        Delta.apply(ops, BLOCK_SIZE, new Delta.BlockSource() {
+            @Override
+            public void copy(long offset, long length) {
+                result.write(base, (int) offset, (int) Math.min(length, base.length - offset));
+            }
+
+            @Override
+            public void write(ByteBuf data) throws IOException {
+                data.readBytes(result, data.readableBytes());
+            }
+        });
+        return result.toByteArray();
+    }
+
+    private static int roundTrip(byte[] base, byte[] target) throws IOException {
+        int[] literalBytes = {0};
+        assertArrayEquals(target, apply(base, diff(base, target, literalBytes)));
+        return literalBytes[0];
+    }
+
+    @Test
+    void copiesUnchangedFile() throws IOException {
+        byte[] base = random(10 * BLOCK_SIZE + 123, 1);
+        assertEquals(123, roundTrip(base, base));
+    }
+
+    @Test
+    void sendsOnlyInsertedBytes() throws IOException {
+        byte[] base = random(10 * BLOCK_SIZE, 2);
+        byte[] inserted = random(100, 3);
+        byte[] target = new byte[base.length + inserted.length];
+        System.arraycopy(base, 0, target, 0, 4 * BLOCK_SIZE + 7);
+        System.arraycopy(inserted, 0, target, 4 * BLOCK_SIZE + 7, inserted.length);
+        System.arraycopy(base, 4 * BLOCK_SIZE + 7, target, 4 * BLOCK_SIZE + 7 + inserted.length, base.length - 4 * BLOCK_SIZE - 7);
+
+        assertTrue(roundTrip(base, target) <= BLOCK_SIZE + inserted.length);
+    }
+
+    @Test
+    void reordersBlocks() throws IOException {
+        byte[] base = random(4 * BLOCK_SIZE, 4);
+        byte[] target = new byte[base.length];
+        System.arraycopy(base, 2 * BLOCK_SIZE, target, 0, 2 * BLOCK_SIZE);
+        System.arraycopy(base, 0, target, 2 * BLOCK_SIZE, 2 * BLOCK_SIZE);
+
+        assertEquals(0, roundTrip(base, target));
+    }
+
+    @Test
+    void sendsUnrelatedFileAsLiterals() throws IOException {
+        byte[] target = random(3 * BLOCK_SIZE + 5, 6);
+        assertEquals(target.length, roundTrip(random(3 * BLOCK_SIZE, 5), target));
+    }
+
+    @Test
+    void handlesEmptyFiles() throws IOException {
+        byte[] data = random(BLOCK_SIZE / 2, 7);
+        assertEquals(data.length, roundTrip(new byte[0], data));
+        assertEquals(0, roundTrip(data, new byte[0]));
+    }
+
+    @Test
+    void rollingChecksumMatchesDirectOne() {
+        byte[] data = random(3 * BLOCK_SIZE, 8);
+        int checksum = Delta.weakChecksum(data, 0, BLOCK_SIZE);
+        int a = checksum & 0xFFFF;
+        int b = checksum >>> 16;
+        for (int start = 0; start + BLOCK_SIZE < data.length; start++) {
+            int out = data[start] & 0xFF;
+            int in = data[start + BLOCK_SIZE] & 0xFF;
+            a = (a - out + in) & 0xFFFF;
+            b = (b - BLOCK_SIZE * out + a) & 0xFFFF;
+            assertEquals(Delta.weakChecksum(data, start + 1, BLOCK_SIZE), a | (b << 16));
+        }
+    }
+
+    @Test
+    void rejectsUnknownInstruction() {
+        assertThrows(IOException.class, () -> apply(new byte[0], Unpooled.wrappedBuffer(new byte[]{42})));
+    }
+
+    @Test
+    void blockSizeStaysWithinBounds() {
+        assertEquals(2048, Delta.blockSize(0));
+        assertEquals(Delta.MAX_BLOCK_SIZE, Delta.blockSize(1L << 40));
+        assertEquals(10240, Delta.blockSize(100L * 1024 * 1024));
+    }
+}
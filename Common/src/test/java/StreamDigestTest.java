@@ -0,0 +1,76 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamDigestTest {
+    private static final int[] CUTS = {0, 7, 1000, 65536, 200_000, 300_001};
+
+    private static byte[] content() {
+        byte[] data = new byte[CUTS[CUTS.length - 1]];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    void mixesVerifiedAndComputedChecksums() throws IOException {
+        byte[] data = content();
+        StreamDigest digest = new StreamDigest();
+        for (int i = 0; i + 1 < CUTS.length; i++) {
+            ByteBuf part = Unpooled.wrappedBuffer(data, CUTS[i], CUTS[i + 1] - CUTS[i]);
+            if (i % 2 == 0) {
+                digest.update(CUTS[i], part, Checksum.crc(part));
+            } else {
+                digest.update(CUTS[i], part);
+            }
+        }
+
+        FileMeta meta = digest.finish(0);
+        FileMeta expected = StreamDigest.describe(new ByteArrayInputStream(data), data.length, 0);
+        assertEquals(expected.size(), meta.size());
+        assertEquals(expected.crc(), meta.crc());
+        assertArrayEquals(expected.hash(), meta.hash());
+    }
+
+    @Test
+    void recordsRangeChecksums() throws IOException {
+        byte[] data = new byte[2 * FileMeta.RANGE_SIZE + 12345];
+        new Random(2).nextBytes(data);
+        StreamDigest digest = new StreamDigest();
+        int partSize = 700_000;
+        for (int offset = 0; offset < data.length; offset += partSize) {
+            ByteBuf part = Unpooled.wrappedBuffer(data, offset, Math.min(partSize, data.length - offset));
+            digest.update(offset, part, Checksum.crc(part));
+        }
+
+        FileMeta meta = digest.finish(0);
+        assertEquals(3, meta.rangeCrcs().length);
+        for (int range = 0; range < meta.rangeCrcs().length; range++) {
+            int offset = range * FileMeta.RANGE_SIZE;
+            ByteBuf expected = Unpooled.wrappedBuffer(data, offset, Math.min(FileMeta.RANGE_SIZE, data.length - offset));
+            assertEquals(Checksum.crc(expected), meta.rangeCrcs()[range]);
+        }
+        assertEquals(Checksum.crc(Unpooled.wrappedBuffer(data)), meta.crc());
+        assertEquals(Checksum.crc(Unpooled.wrappedBuffer(data, FileMeta.RANGE_SIZE, data.length - FileMeta.RANGE_SIZE)),
+                meta.rangeCrc(FileMeta.RANGE_SIZE, data.length - FileMeta.RANGE_SIZE));
+        assertTrue(meta.hasRangeCrc(0, 2 * FileMeta.RANGE_SIZE));
+        assertFalse(meta.hasRangeCrc(0, 1000));
+
+        FileMeta described = StreamDigest.describe(new ByteArrayInputStream(data), data.length, 0);
+        assertArrayEquals(meta.rangeCrcs(), described.rangeCrcs());
+    }
+
+    @Test
+    void ignoresPartsOutOfOrder() {
+        byte[] data = content();
+        StreamDigest digest = new StreamDigest();
+        digest.update(0, Unpooled.wrappedBuffer(data, 0, 1000));
+        digest.update(2000, Unpooled.wrappedBuffer(data, 2000, 1000), 0);
+        assertEquals(1000, digest.size());
+    }
+}
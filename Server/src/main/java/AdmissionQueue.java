@@ -0,0 +1,105 @@
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionQueue {
+    public interface Waiter {
+        void onPosition(int position);
+
+        void onAdmitted();
+    }
+
+    private record Update(Waiter waiter, int position) {
+    }
+
+    private final int maxUsers;
+    private final long notifyInterval;
+    private final Map<Waiter, Integer> waiters = new LinkedHashMap<>();
+    private int connections = 0;
+    private boolean isNotifyScheduled;
+
+    public AdmissionQueue(int maxUsers, long notifyInterval) {
+        this.maxUsers = maxUsers;
+        this.notifyInterval = notifyInterval;
+    }
+
+    public void enqueue(Waiter waiter) {
+        int position;
+        synchronized (this) {
+            if (waiters.isEmpty() && connections < maxUsers) {
+                connections++;
+                position = 0;
+            } else {
+                position = waiters.size() + 1;
+                waiters.put(waiter, position);
+            }
+        }
+
+        if (position == 0) {
+            waiter.onAdmitted();
+        } else {
+            waiter.onPosition(position);
+        }
+    }
+
+    public void cancel(Waiter waiter) {
+        synchronized (this) {
+            if (waiters.remove(waiter) != null) {
+                scheduleNotify();
+            }
+        }
+    }
+
+    public void release() {
+        Waiter next = null;
+        synchronized (this) {
+            Iterator<Waiter> iterator = waiters.keySet().iterator();
+            if (iterator.hasNext()) {
+                next = iterator.next();
+                iterator.remove();
+                scheduleNotify();
+            } else {
+                connections--;
+            }
+        }
+
+        if (next != null) {
+            next.onAdmitted();
+        }
+    }
+
+    public synchronized int size() {
+        return waiters.size();
+    }
+
+    private void scheduleNotify() {
+        if (!isNotifyScheduled && !waiters.isEmpty()) {
+            isNotifyScheduled = true;
+            GlobalEventExecutor.INSTANCE.schedule(this::notifyPositions, notifyInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void notifyPositions() {
+        List<Update> updates = new ArrayList<>();
+        synchronized (this) {
+            isNotifyScheduled = false;
+            int position = 1;
+            for (Map.Entry<Waiter, Integer> waiter : waiters.entrySet()) {
+                if (waiter.getValue() != position) {
+                    waiter.setValue(position);
+                    updates.add(new Update(waiter.getKey(), position));
+                }
+                position++;
+            }
+        }
+
+        for (Update update : updates) {
+            update.waiter().onPosition(update.position());
+        }
+    }
+}
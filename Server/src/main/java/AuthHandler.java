@@ -0,0 +1,282 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AttributeKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class AuthHandler extends SimpleChannelInboundHandler<Message> {
+    public static final AttributeKey<Session> SESSION = AttributeKey.valueOf("session");
+    public static final AttributeKey<String> PEER = AttributeKey.valueOf("peer");
+
+    private static final Set<String> REPLICA_COMMANDS = Set.of(Message.REPLICA_CHECK_COMMAND,
+            Message.REPLICA_PUT_COMMAND, Message.REPLICA_COMMIT_COMMAND, Message.REPLICA_DELETE_COMMAND);
+
+    private static final String LOGIN_PATTERN = "(?U)[\\w-]+";
+
+    private enum Admission {NONE, WAITING, ADMITTED, ATTACHED, CLOSED}
+
+    private final AdmissionQueue admissionQueue;
+    private final SessionRegistry sessionRegistry;
+    private final CredentialStore credentialStore;
+    private final BandwidthScheduler bandwidthScheduler;
+    private final Cluster cluster;
+    private final Replicator replicator;
+
+    private final AtomicReference<Admission> admission = new AtomicReference<>(Admission.NONE);
+    private AdmissionQueue.Waiter waiter;
+    private Session ownSession;
+
+    public AuthHandler(AdmissionQueue admissionQueue, SessionRegistry sessionRegistry, CredentialStore credentialStore,
+                       BandwidthScheduler bandwidthScheduler, Cluster cluster, Replicator replicator) {
+        this.admissionQueue = admissionQueue;
+        this.sessionRegistry = sessionRegistry;
+        this.credentialStore = credentialStore;
+        this.bandwidthScheduler = bandwidthScheduler;
+        this.cluster = cluster;
+        this.replicator = replicator;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Message msg) {
+        switch (msg.command()) {
+            case Message.CONNECT_COMMAND -> connectCase(ctx, msg);
+            case Message.USER_COMMAND -> userCase(ctx, msg);
+            case Message.LOGIN_COMMAND -> loginCase(ctx, msg);
+            case Message.REGISTER_COMMAND -> registerCase(ctx, msg);
+            case Message.ATTACH_COMMAND -> attachCase(ctx, msg);
+            case Message.ROUTE_COMMAND -> routeCase(ctx, msg);
+            case Message.PEER_COMMAND -> peerCase(ctx, msg);
+            case Message.REPLICA_USER_COMMAND -> replicaUserCase(ctx, msg);
+            default -> {
+                if (ctx.channel().attr(SESSION).get() != null
+                        || ctx.channel().attr(PEER).get() != null && REPLICA_COMMANDS.contains(msg.command())) {
+                    ctx.fireChannelRead(msg.retain());
+                } else {
+                    sendFailureCallback(ctx, msg);
+                }
+            }
+        }
+    }
+
+    private void connectCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (!admission.compareAndSet(Admission.NONE, Admission.WAITING)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        byte features = acceptedFeatures(requestMsg.data());
+        waiter = new AdmissionQueue.Waiter() {
+            @Override
+            public void onPosition(int position) {
+                ctx.writeAndFlush(new Message(requestMsg.id(), Message.QUEUE_COMMAND, null, Unpooled.copyInt(position)));
+            }
+
+            @Override
+            public void onAdmitted() {
+                if (admission.compareAndSet(Admission.WAITING, Admission.ADMITTED)) {
+                    ctx.executor().execute(() -> enableFeatures(ctx, requestMsg, features));
+                } else {
+                    admissionQueue.release();
+                }
+            }
+        };
+        admissionQueue.enqueue(waiter);
+    }
+
+    private void userCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (!canAuthorize(ctx, requestMsg) || redirected(ctx, requestMsg, cluster.isOwner(requestMsg.path()))) {
+            return;
+        }
+
+        lookup(ctx, requestMsg, credentialStore.findPassword(requestMsg.path()), password -> {
+            if (password != null) {
+                sendSuccessCallback(ctx, requestMsg);
+            } else {
+                sendFailureCallback(ctx, requestMsg);
+            }
+        });
+    }
+
+    private void loginCase(ChannelHandlerContext ctx, Message requestMsg) {
+        boolean isReplicaLogin = requestMsg.offset() == Message.REPLICA_LOGIN;
+        if (!canAuthorize(ctx, requestMsg) || redirected(ctx, requestMsg,
+                isReplicaLogin ? cluster.isOwner(requestMsg.path()) : cluster.isPrimary(requestMsg.path()))) {
+            return;
+        }
+
+        String password = requestMsg.data().toString(StandardCharsets.UTF_8);
+        lookup(ctx, requestMsg, credentialStore.findAccount(requestMsg.path()), account -> {
+            if (account != null && password.equals(account.password())) {
+                openSession(ctx, requestMsg, account.bandwidth(), account.weight());
+            } else {
+                sendFailureCallback(ctx, requestMsg);
+            }
+        });
+    }
+
+    private void registerCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (!canAuthorize(ctx, requestMsg) || redirected(ctx, requestMsg, cluster.isPrimary(requestMsg.path()))) {
+            return;
+        }
+
+        String password = requestMsg.data().toString(StandardCharsets.UTF_8);
+        lookup(ctx, requestMsg, credentialStore.addUser(requestMsg.path(), password), isAdded -> {
+            if (isAdded) {
+                if (replicator != null) {
+                    replicator.userAdded(requestMsg.path());
+                }
+                openSession(ctx, requestMsg, 0, 1);
+            } else {
+                sendFailureCallback(ctx, requestMsg);
+            }
+        });
+    }
+
+    private void attachCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (ctx.channel().attr(PEER).get() != null || !admission.compareAndSet(Admission.NONE, Admission.ATTACHED)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        byte features = acceptedFeatures(requestMsg.data());
+        Session session = sessionRegistry.attach(requestMsg.data().toString(StandardCharsets.UTF_8), ctx.channel());
+        if (session != null) {
+            ctx.channel().attr(SESSION).set(session);
+            bandwidthScheduler.attach(ctx.channel(), session);
+            enableFeatures(ctx, requestMsg, features);
+        } else {
+            sendFailureCallback(ctx, requestMsg);
+        }
+    }
+
+    private void routeCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (requestMsg.path() == null || !requestMsg.path().matches(LOGIN_PATTERN)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        List<String> owners = cluster.owners(requestMsg.path());
+        ByteBuf details = ctx.alloc().buffer();
+        MessageEncoder.writeVarLong(details, owners.size());
+        for (String owner : owners) {
+            byte[] address = owner.getBytes(StandardCharsets.UTF_8);
+            MessageEncoder.writeVarLong(details, address.length);
+            details.writeBytes(address);
+        }
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, details));
+    }
+
+    private void peerCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (admission.get() == Admission.NONE && ctx.channel().attr(SESSION).get() == null && requestMsg.path() != null
+                && cluster.checkSecret(requestMsg.data().toString(StandardCharsets.UTF_8))) {
+            ctx.channel().attr(PEER).set(requestMsg.path());
+            sendSuccessCallback(ctx, requestMsg);
+        } else {
+            sendFailureCallback(ctx, requestMsg);
+        }
+    }
+
+    private void replicaUserCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (ctx.channel().attr(PEER).get() == null || requestMsg.path() == null || !requestMsg.path().matches(LOGIN_PATTERN)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        ByteBuf data = requestMsg.data();
+        String password = data.readCharSequence((int) MessageDecoder.readVarLong(data), StandardCharsets.UTF_8).toString();
+        CredentialStore.Account account = new CredentialStore.Account(password, MessageDecoder.readVarLong(data), (int) MessageDecoder.readVarLong(data));
+        lookup(ctx, requestMsg, credentialStore.addUser(requestMsg.path(), account), isAdded -> sendSuccessCallback(ctx, requestMsg));
+    }
+
+    private boolean redirected(ChannelHandlerContext ctx, Message requestMsg, boolean isServed) {
+        if (isServed) {
+            return false;
+        }
+
+        ByteBuf address = Unpooled.copiedBuffer(cluster.primary(requestMsg.path()), StandardCharsets.UTF_8);
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.REDIRECT_CODE, address));
+        return true;
+    }
+
+    private byte acceptedFeatures(ByteBuf data) {
+        byte features = data.isReadable() ? data.readByte() : 0;
+        return Server.COMPRESSION_ENABLED ? (byte) (features & CompressionCodec.FEATURE) : 0;
+    }
+
+    private void enableFeatures(ChannelHandlerContext ctx, Message requestMsg, byte features) {
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, Unpooled.wrappedBuffer(new byte[]{features})));
+
+        if ((features & CompressionCodec.FEATURE) != 0) {
+            ctx.pipeline().addBefore(ctx.pipeline().context(ChunkedWriteHandler.class).name(), null,
+                    new CompressionCodec(Message.MAX_OBJECT_SIZE, Server.COMPRESSION_LEVEL));
+        }
+    }
+
+    private boolean canAuthorize(ChannelHandlerContext ctx, Message requestMsg) {
+        if (admission.get() != Admission.ADMITTED || ctx.channel().attr(SESSION).get() != null
+                || requestMsg.path() == null || !requestMsg.path().matches(LOGIN_PATTERN)) {
+            sendFailureCallback(ctx, requestMsg);
+            return false;
+        }
+        return true;
+    }
+
+    private <T> void lookup(ChannelHandlerContext ctx, Message requestMsg, CompletableFuture<T> query, Consumer<T> callback) {
+        requestMsg.retain();
+        query.whenCompleteAsync((result, e) -> {
+            try {
+                if (e != null) {
+                    ctx.fireExceptionCaught(e);
+                    sendFailureCallback(ctx, requestMsg);
+                } else {
+                    callback.accept(result);
+                }
+            } finally {
+                requestMsg.release();
+            }
+        }, ctx.executor());
+    }
+
+    private void openSession(ChannelHandlerContext ctx, Message requestMsg, long bandwidth, int weight) {
+        if (ownSession != null) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        ownSession = sessionRegistry.open(requestMsg.path(), bandwidth, weight, !cluster.isPrimary(requestMsg.path()));
+        ctx.channel().attr(SESSION).set(ownSession);
+        bandwidthScheduler.attach(ctx.channel(), ownSession);
+
+        ByteBuf token = Unpooled.copiedBuffer(ownSession.token(), StandardCharsets.UTF_8);
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, token));
+    }
+
+    private void sendSuccessCallback(ChannelHandlerContext ctx, Message requestMsg) {
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE));
+    }
+
+    private void sendFailureCallback(ChannelHandlerContext ctx, Message requestMsg) {
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.FAILURE_CODE));
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (ownSession != null) {
+            sessionRegistry.close(ownSession);
+        }
+
+        switch (admission.getAndSet(Admission.CLOSED)) {
+            case WAITING -> admissionQueue.cancel(waiter);
+            case ADMITTED -> admissionQueue.release();
+        }
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,99 @@
+import io.netty.channel.Channel;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import io.netty.handler.traffic.TrafficCounter;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class BandwidthScheduler {
+    private static final long CHECK_INTERVAL_MS = 100;
+    private static final long REBALANCE_INTERVAL_MS = 1000;
+
+    private static class UserShare {
+        private final GlobalTrafficShapingHandler shaper =
+                new GlobalTrafficShapingHandler(GlobalEventExecutor.INSTANCE, 0, 0, CHECK_INTERVAL_MS);
+        private long bandwidth;
+        private int weight;
+        private int channelsNum;
+        private long transferredBytes;
+        private boolean isActive;
+    }
+
+    private final long globalBandwidth;
+    private final long userBandwidth;
+    private final Map<String, UserShare> users = new HashMap<>();
+    private ScheduledFuture<?> rebalanceTask;
+
+    public BandwidthScheduler(long globalBandwidth, long userBandwidth) {
+        this.globalBandwidth = globalBandwidth;
+        this.userBandwidth = userBandwidth;
+    }
+
+    public synchronized void attach(Channel channel, Session session) {
+        long bandwidth = session.bandwidth() > 0 ? session.bandwidth() : userBandwidth;
+        if (globalBandwidth <= 0 && bandwidth <= 0) {
+            return;
+        }
+
+        UserShare user = users.computeIfAbsent(session.login(), login -> new UserShare());
+        user.bandwidth = bandwidth;
+        user.weight = Math.max(1, session.weight());
+        user.channelsNum++;
+        user.isActive = true;
+        channel.pipeline().addFirst(user.shaper);
+        channel.closeFuture().addListener(future -> detach(session.login()));
+
+        configure();
+        if (rebalanceTask == null) {
+            rebalanceTask = GlobalEventExecutor.INSTANCE.scheduleAtFixedRate(this::rebalance,
+                    REBALANCE_INTERVAL_MS, REBALANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void detach(String login) {
+        UserShare user = users.get(login);
+        if (user == null || --user.channelsNum > 0) {
+            return;
+        }
+
+        users.remove(login);
+        user.shaper.release();
+        if (users.isEmpty()) {
+            rebalanceTask.cancel(false);
+            rebalanceTask = null;
+        } else {
+            configure();
+        }
+    }
+
+    private synchronized void rebalance() {
+        for (UserShare user : users.values()) {
+            TrafficCounter counter = user.shaper.trafficCounter();
+            long transferredBytes = counter.cumulativeReadBytes() + counter.cumulativeWrittenBytes();
+            user.isActive = transferredBytes > user.transferredBytes;
+            user.transferredBytes = transferredBytes;
+        }
+        configure();
+    }
+
+    private void configure() {
+        long activeWeight = 0;
+        for (UserShare user : users.values()) {
+            if (user.isActive) {
+                activeWeight += user.weight;
+            }
+        }
+
+        for (UserShare user : users.values()) {
+            long limit = user.bandwidth;
+            if (globalBandwidth > 0) {
+                long share = globalBandwidth * user.weight / (activeWeight + (user.isActive ? 0 : user.weight));
+                limit = limit > 0 ? Math.min(limit, share) : share;
+            }
+            user.shaper.configure(limit, limit);
+        }
+    }
+}
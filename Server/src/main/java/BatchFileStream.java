@@ -0,0 +1,145 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+public class BatchFileStream implements ChunkedInput<Message> {
+    private final long id;
+    private final String command;
+    private final String path;
+
+    private final Path rootDir;
+    private final Path userDir;
+    private final ChunkStore chunkStore;
+    private final Iterator<Path> files;
+
+    private Path file;
+    private InputStream inputStream;
+    private byte[] name;
+    private long size;
+    private long offset;
+
+    private int sentNum;
+    private long progress;
+    private boolean isEndOfInput;
+
+    public BatchFileStream(long id, String command, String path,
+                           Path rootDir, Path userDir, ChunkStore chunkStore, List<Path> files) {
+        this.id = id;
+        this.command = command;
+        this.path = path;
+
+        this.rootDir = rootDir;
+        this.userDir = userDir;
+        this.chunkStore = chunkStore;
+        this.files = files.iterator();
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return isEndOfInput;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inputStream != null) {
+            inputStream.close();
+            inputStream = null;
+        }
+    }
+
+    @Deprecated
+    @Override
+    public Message readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public Message readChunk(ByteBufAllocator allocator) throws IOException {
+        if (isEndOfInput) {
+            return null;
+        }
+
+        ByteBuf frame = allocator.buffer();
+        try {
+            while (inputStream != null || openNext()) {
+                int headerSize = name.length + 4 * 10 + Checksum.SIZE;
+                if (frame.readableBytes() + headerSize >= Message.MAX_DATA_SIZE) {
+                    break;
+                }
+
+                int partSize = (int) Math.min(size - offset, Message.MAX_DATA_SIZE - frame.readableBytes() - headerSize);
+                MessageEncoder.writeVarLong(frame, name.length);
+                frame.writeBytes(name);
+                MessageEncoder.writeVarLong(frame, size);
+                MessageEncoder.writeVarLong(frame, offset);
+                MessageEncoder.writeVarLong(frame, partSize);
+                int partIndex = frame.writerIndex();
+                for (int written = 0; written < partSize; ) {
+                    int read = frame.writeBytes(inputStream, partSize - written);
+                    if (read < 0) {
+                        throw new IOException("Файл " + file + " изменился во время отправки");
+                    }
+                    written += read;
+                }
+                frame.writeInt(Checksum.crc(frame.slice(partIndex, partSize)));
+                offset += partSize;
+                progress += partSize;
+
+                if (offset >= size) {
+                    close();
+                    sentNum++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+
+        if (frame.isReadable()) {
+            return new Message(id, command, path, frame);
+        }
+        frame.release();
+
+        isEndOfInput = true;
+        ByteBuf details = allocator.buffer();
+        MessageEncoder.writeVarLong(details, sentNum);
+        return Message.report(id, Message.SUCCESS_CODE, details);
+    }
+
+    private boolean openNext() throws IOException {
+        while (files.hasNext()) {
+            file = files.next();
+            Path filePath = rootDir.resolve(file);
+            List<ChunkStore.ChunkRef> chunks = null;
+            if (!Files.isRegularFile(filePath) && (chunkStore == null || (chunks = chunkStore.readManifest(file)) == null)) {
+                continue;
+            }
+
+            name = userDir.relativize(filePath).toString().getBytes(StandardCharsets.UTF_8);
+            size = chunks == null ? Files.size(filePath) : ChunkStore.size(chunks);
+            offset = 0;
+            inputStream = chunks == null ? Files.newInputStream(filePath) : chunkStore.openStream(chunks);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long length() {
+        return -1;
+    }
+
+    @Override
+    public long progress() {
+        return progress;
+    }
+}
@@ -0,0 +1,110 @@
+import io.netty.buffer.ByteBuf;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BlockCache implements BlockCacheMXBean {
+    public static final int BLOCK_SIZE = 256 * 1024;
+
+    public record BlockKey(Path path, Object fileKey, long modified, long block) {
+    }
+
+    private final long capacity;
+    private final LinkedHashMap<BlockKey, ByteBuf> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Set<BlockKey>> pathBlocks = new HashMap<>();
+    private long size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BlockCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized ByteBuf get(BlockKey key) {
+        ByteBuf block = blocks.get(key);
+        if (block == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return block.retainedDuplicate();
+    }
+
+    public synchronized void put(BlockKey key, ByteBuf block) {
+        if (block.readableBytes() > capacity || blocks.containsKey(key)) {
+            return;
+        }
+
+        blocks.put(key, block.retainedDuplicate());
+        pathBlocks.computeIfAbsent(key.path(), path -> new HashSet<>()).add(key);
+        size += block.readableBytes();
+
+        for (Iterator<Map.Entry<BlockKey, ByteBuf>> iterator = blocks.entrySet().iterator(); size > capacity && iterator.hasNext(); ) {
+            Map.Entry<BlockKey, ByteBuf> eldest = iterator.next();
+            iterator.remove();
+            forget(eldest.getKey(), eldest.getValue());
+            evictions.increment();
+        }
+    }
+
+    public synchronized void invalidate(Path path) {
+        Set<BlockKey> keys = pathBlocks.remove(path);
+        if (keys == null) {
+            return;
+        }
+
+        for (BlockKey key : keys) {
+            ByteBuf block = blocks.remove(key);
+            size -= block.readableBytes();
+            block.release();
+        }
+    }
+
+    private void forget(BlockKey key, ByteBuf block) {
+        Set<BlockKey> keys = pathBlocks.get(key.path());
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            pathBlocks.remove(key.path());
+        }
+        size -= block.readableBytes();
+        block.release();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized int getBlocksNum() {
+        return blocks.size();
+    }
+}
@@ -0,0 +1,13 @@
+public interface BlockCacheMXBean {
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getSize();
+
+    long getCapacity();
+
+    int getBlocksNum();
+}
@@ -0,0 +1,112 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+public class CachedFileStream implements ChunkedInput<Message> {
+    private final long id;
+    private final String command;
+    private final String path;
+    private final long offset;
+
+    private final BlockCache blockCache;
+    private final Path filePath;
+    private final FileChannel fileChannel;
+    private final Object fileKey;
+    private final long modified;
+    private final long fileSize;
+    private final long fileOffset;
+    private final long length;
+    private long progress;
+
+    public CachedFileStream(long id, String command, String path, long offset,
+                            BlockCache blockCache, Path filePath, long fileOffset, long length) throws IOException {
+        this.id = id;
+        this.command = command;
+        this.path = path;
+        this.offset = offset;
+
+        this.blockCache = blockCache;
+        this.filePath = filePath;
+        this.fileChannel = FileChannel.open(filePath, StandardOpenOption.READ);
+        BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        this.fileKey = attributes.fileKey();
+        this.modified = attributes.lastModifiedTime().toMillis();
+        this.fileSize = fileChannel.size();
+        this.fileOffset = fileOffset;
+        this.length = length;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return progress >= length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    @Deprecated
+    @Override
+    public Message readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public Message readChunk(ByteBufAllocator allocator) throws IOException {
+        if (isEndOfInput()) {
+            return null;
+        }
+
+        long position = fileOffset + progress;
+        BlockCache.BlockKey key = new BlockCache.BlockKey(filePath, fileKey, modified, position / BlockCache.BLOCK_SIZE);
+        long blockStart = key.block() * BlockCache.BLOCK_SIZE;
+        ByteBuf block = blockCache.get(key);
+        if (block == null) {
+            block = readBlock(allocator, blockStart, (int) Math.min(BlockCache.BLOCK_SIZE, fileSize - blockStart));
+            blockCache.put(key, block);
+        }
+
+        int from = (int) (position - blockStart);
+        int partSize = (int) Math.min(block.readableBytes() - from, length - progress);
+        ByteBuf data = block.retainedSlice(block.readerIndex() + from, partSize);
+        block.release();
+
+        Message part = new Message(id, command, path, offset + progress, data);
+        progress += partSize;
+        return part;
+    }
+
+    private ByteBuf readBlock(ByteBufAllocator allocator, long blockStart, int blockSize) throws IOException {
+        ByteBuf block = allocator.directBuffer(blockSize);
+        try {
+            while (block.isWritable()) {
+                if (block.writeBytes(fileChannel, blockStart + block.writerIndex(), block.writableBytes()) < 0) {
+                    throw new IOException("Ошибка при считывании данных из файла");
+                }
+            }
+        } catch (IOException e) {
+            block.release();
+            throw e;
+        }
+        return block;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return progress;
+    }
+}
@@ -0,0 +1,341 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ChunkStore {
+    public record ChunkRef(String name, int length) {
+    }
+
+    public static final class Staging {
+        private final List<ChunkRef> chunks;
+        private final Map<String, Path> tempChunks = new LinkedHashMap<>();
+        private Path tempManifest;
+        private boolean isFinished;
+
+        private Staging(List<ChunkRef> chunks) {
+            this.chunks = chunks;
+        }
+
+        public List<Path> files() {
+            List<Path> files = new ArrayList<>(tempChunks.values());
+            if (tempManifest != null) {
+                files.add(tempManifest);
+            }
+            return files;
+        }
+    }
+
+    private final Path chunksDir;
+    private final Path manifestsDir;
+    private final Path tempDir;
+    private final Map<String, Integer> references = new HashMap<>();
+
+    public ChunkStore(Path storeDir) throws IOException {
+        chunksDir = storeDir.resolve("chunks");
+        manifestsDir = storeDir.resolve("manifests");
+        tempDir = storeDir.resolve("tmp");
+        Files.createDirectories(chunksDir);
+        Files.createDirectories(manifestsDir);
+        Files.createDirectories(tempDir);
+
+        try (Stream<Path> manifests = Files.walk(manifestsDir)) {
+            for (Path manifest : (Iterable<Path>) manifests.filter(Files::isRegularFile)::iterator) {
+                for (ChunkRef chunk : readRefs(manifest)) {
+                    references.merge(chunk.name(), 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Path> unreferencedChunks;
+        try (Stream<Path> chunks = Files.walk(chunksDir)) {
+            unreferencedChunks = chunks.filter(chunk -> Files.isRegularFile(chunk) && !references.containsKey(chunk.getFileName().toString())).toList();
+        }
+        for (Path chunk : unreferencedChunks) {
+            Files.delete(chunk);
+        }
+        try (Stream<Path> tempFiles = Files.list(tempDir)) {
+            for (Path tempFile : (Iterable<Path>) tempFiles::iterator) {
+                Files.delete(tempFile);
+            }
+        }
+    }
+
+    public Path chunkPath(String name) {
+        return chunksDir.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    public boolean isMissing(String name) {
+        return !Files.exists(chunkPath(name));
+    }
+
+    public static boolean isValid(String name, ByteBuf data) {
+        MessageDigest digest = Chunker.newDigest();
+        digest.update(data.nioBuffer());
+        return ByteBufUtil.hexDump(digest.digest()).equals(name);
+    }
+
+    public Path writeChunk(String name, ByteBuf data) throws IOException {
+        Path tempPath = Files.createTempFile(tempDir, name, null);
+        try (FileChannel fileChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            for (int written = 0; written < data.readableBytes(); ) {
+                written += data.getBytes(data.readerIndex() + written, fileChannel, written, data.readableBytes() - written);
+            }
+        }
+        return tempPath;
+    }
+
+    public synchronized List<Path> moveChunk(Path tempPath, String name) throws IOException {
+        Path chunkPath = chunkPath(name);
+        if (Files.exists(chunkPath)) {
+            Files.delete(tempPath);
+            return List.of();
+        }
+
+        List<Path> dirs = createParents(chunkPath);
+        Files.move(tempPath, chunkPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return dirs;
+    }
+
+    public Staging stage(Path plainPath) throws IOException {
+        Staging staging = new Staging(new ArrayList<>());
+        try (FileChannel source = FileChannel.open(plainPath, StandardOpenOption.READ)) {
+            for (Chunker.Chunk chunk : Chunker.split(plainPath)) {
+                boolean isStored = reserve(chunk.name());
+                staging.chunks.add(new ChunkRef(chunk.name(), chunk.length()));
+                if (isStored || staging.tempChunks.containsKey(chunk.name())) {
+                    continue;
+                }
+
+                Path tempPath = Files.createTempFile(tempDir, chunk.name(), null);
+                staging.tempChunks.put(chunk.name(), tempPath);
+                try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                    for (long copied = 0; copied < chunk.length(); ) {
+                        copied += source.transferTo(chunk.offset() + copied, chunk.length() - copied, target);
+                    }
+                }
+            }
+            staging.tempManifest = writeTempManifest(staging.chunks);
+        } catch (IOException | RuntimeException e) {
+            abort(staging);
+            throw e;
+        }
+        return staging;
+    }
+
+    public Staging stage(List<ChunkRef> chunks) throws IOException {
+        if (!reserve(chunks)) {
+            return null;
+        }
+
+        Staging staging = new Staging(chunks);
+        try {
+            staging.tempManifest = writeTempManifest(chunks);
+        } catch (IOException e) {
+            abort(staging);
+            throw e;
+        }
+        return staging;
+    }
+
+    private synchronized boolean reserve(String name) {
+        references.merge(name, 1, Integer::sum);
+        return Files.exists(chunkPath(name));
+    }
+
+    private synchronized boolean reserve(List<ChunkRef> chunks) {
+        for (ChunkRef chunk : chunks) {
+            if (isMissing(chunk.name())) {
+                return false;
+            }
+        }
+        for (ChunkRef chunk : chunks) {
+            references.merge(chunk.name(), 1, Integer::sum);
+        }
+        return true;
+    }
+
+    private Path writeTempManifest(List<ChunkRef> chunks) throws IOException {
+        Path tempPath = Files.createTempFile(tempDir, "manifest", null);
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            for (ChunkRef chunk : chunks) {
+                outputStream.write(ByteBufUtil.decodeHexDump(chunk.name()));
+                outputStream.writeInt(chunk.length());
+            }
+        }
+        return tempPath;
+    }
+
+    public synchronized List<Path> commit(Staging staging, Path file, boolean replace) throws IOException {
+        Path manifest = manifestsDir.resolve(file);
+        if (Files.exists(manifest) && !replace) {
+            abort(staging);
+            return null;
+        }
+
+        List<Path> dirs = new ArrayList<>();
+        List<ChunkRef> previousChunks;
+        try {
+            for (Map.Entry<String, Path> chunk : staging.tempChunks.entrySet()) {
+                dirs.addAll(moveChunk(chunk.getValue(), chunk.getKey()));
+            }
+            previousChunks = replace ? readManifest(file) : null;
+            dirs.addAll(createParents(manifest));
+            Files.move(staging.tempManifest, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            staging.isFinished = true;
+        } catch (IOException | RuntimeException e) {
+            abort(staging);
+            throw e;
+        }
+
+        if (previousChunks != null) {
+            releaseChunks(previousChunks);
+        }
+        return dirs;
+    }
+
+    public synchronized void abort(Staging staging) throws IOException {
+        if (staging.isFinished) {
+            return;
+        }
+
+        staging.isFinished = true;
+        releaseChunks(staging.chunks);
+        for (Path tempPath : staging.files()) {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private static List<Path> createParents(Path path) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        for (Path dir = path.getParent(); dirs.isEmpty() || !Files.isDirectory(dirs.get(dirs.size() - 1)); dir = dir.getParent()) {
+            dirs.add(dir);
+        }
+        Files.createDirectories(path.getParent());
+        return dirs;
+    }
+
+    public boolean hasManifest(Path file) {
+        return Files.isRegularFile(manifestsDir.resolve(file));
+    }
+
+    public List<Path> listManifests(Path dir) throws IOException {
+        Path manifestDir = manifestsDir.resolve(dir);
+        if (!Files.isDirectory(manifestDir)) {
+            return List.of();
+        }
+
+        try (Stream<Path> manifests = Files.walk(manifestDir)) {
+            return manifests.filter(Files::isRegularFile).map(manifestsDir::relativize).toList();
+        }
+    }
+
+    public long lastModified(Path file) throws IOException {
+        return Files.getLastModifiedTime(manifestsDir.resolve(file)).toMillis();
+    }
+
+    public List<ChunkRef> readManifest(Path file) throws IOException {
+        Path manifest = manifestsDir.resolve(file);
+        return Files.isRegularFile(manifest) ? readRefs(manifest) : null;
+    }
+
+    public synchronized boolean deleteManifest(Path file) throws IOException {
+        List<ChunkRef> chunks = readManifest(file);
+        if (chunks == null) {
+            return false;
+        }
+
+        Files.delete(manifestsDir.resolve(file));
+        releaseChunks(chunks);
+        return true;
+    }
+
+    private void releaseChunks(List<ChunkRef> chunks) throws IOException {
+        for (ChunkRef chunk : chunks) {
+            if (references.merge(chunk.name(), -1, Integer::sum) <= 0) {
+                references.remove(chunk.name());
+                Files.deleteIfExists(chunkPath(chunk.name()));
+            }
+        }
+    }
+
+    public InputStream openStream(List<ChunkRef> chunks) {
+        Iterator<ChunkRef> iterator = chunks.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(chunkPath(iterator.next().name()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    public void transferRange(List<ChunkRef> chunks, long offset, long length, WritableByteChannel target) throws IOException {
+        long chunkOffset = 0;
+        for (ChunkRef chunk : chunks) {
+            long from = Math.max(offset, chunkOffset);
+            long to = Math.min(offset + length, chunkOffset + chunk.length());
+            if (from < to) {
+                try (FileChannel source = FileChannel.open(chunkPath(chunk.name()), StandardOpenOption.READ)) {
+                    for (long copied = 0; copied < to - from; ) {
+                        copied += source.transferTo(from - chunkOffset + copied, to - from - copied, target);
+                    }
+                }
+            }
+            chunkOffset += chunk.length();
+        }
+    }
+
+    public static long size(List<ChunkRef> chunks) {
+        long size = 0;
+        for (ChunkRef chunk : chunks) {
+            size += chunk.length();
+        }
+        return size;
+    }
+
+    public static List<ChunkRef> parseRefs(ByteBuf data) {
+        List<ChunkRef> chunks = new ArrayList<>();
+        while (data.readableBytes() >= Chunker.HASH_SIZE + Integer.BYTES) {
+            String name = ByteBufUtil.hexDump(data, data.readerIndex(), Chunker.HASH_SIZE);
+            data.skipBytes(Chunker.HASH_SIZE);
+            chunks.add(new ChunkRef(name, data.readInt()));
+        }
+        return chunks;
+    }
+
+    private static List<ChunkRef> readRefs(Path manifest) throws IOException {
+        List<ChunkRef> chunks = new ArrayList<>();
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+            byte[] hash = new byte[Chunker.HASH_SIZE];
+            while (inputStream.read(hash, 0, 1) == 1) {
+                inputStream.readFully(hash, 1, Chunker.HASH_SIZE - 1);
+                chunks.add(new ChunkRef(ByteBufUtil.hexDump(hash), inputStream.readInt()));
+            }
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,40 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+
+public record ChunkedFileStream(long id, String command, String path, long offset, ChunkedNioFile file) implements ChunkedInput<Message> {
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return file.isEndOfInput();
+    }
+
+    @Override
+    public void close() throws Exception {
+        file.close();
+    }
+
+    @Deprecated
+    @Override
+    public Message readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public Message readChunk(ByteBufAllocator allocator) throws Exception {
+        long position = offset + file.currentOffset() - file.startOffset();
+        ByteBuf data = file.readChunk(allocator);
+        return data == null ? null : new Message(id, command, path, position, data);
+    }
+
+    @Override
+    public long length() {
+        return file.length();
+    }
+
+    @Override
+    public long progress() {
+        return file.progress();
+    }
+}
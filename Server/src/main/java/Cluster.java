@@ -0,0 +1,103 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class Cluster {
+    private static final int VIRTUAL_NODES_NUM = 128;
+
+    private final String self;
+    private final List<String> nodes;
+    private final int replicasNum;
+    private final String secret;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public Cluster(String self, List<String> nodes, int replicasNum, String secret) {
+        this.self = self;
+        this.nodes = nodes.isEmpty() ? List.of(self) : List.copyOf(nodes);
+        this.replicasNum = Math.max(1, Math.min(replicasNum, this.nodes.size()));
+        this.secret = secret;
+
+        if (!this.nodes.contains(self)) {
+            throw new IllegalArgumentException("Узел " + self + " отсутствует в списке узлов кластера");
+        }
+        if (!nodes.isEmpty() && (secret == null || secret.isBlank())) {
+            throw new IllegalArgumentException("Не задан общий секрет узлов кластера (-Dnetstorage.cluster.secret)");
+        }
+        for (String node : this.nodes) {
+            for (int i = 0; i < VIRTUAL_NODES_NUM; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public static Cluster parse(String self, String nodes, int replicasNum, String secret) {
+        List<String> nodeList = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            if (!node.isBlank()) {
+                nodeList.add(node.trim());
+            }
+        }
+        return new Cluster(self, nodeList, replicasNum, secret);
+    }
+
+    public boolean isEnabled() {
+        return nodes.size() > 1;
+    }
+
+    public String self() {
+        return self;
+    }
+
+    public List<String> owners(String login) {
+        List<String> owners = new ArrayList<>(replicasNum);
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(login));
+        while (owners.size() < replicasNum) {
+            if (entry == null) {
+                entry = ring.firstEntry();
+            }
+            if (!owners.contains(entry.getValue())) {
+                owners.add(entry.getValue());
+            }
+            entry = ring.higherEntry(entry.getKey());
+        }
+        return owners;
+    }
+
+    public String primary(String login) {
+        return owners(login).get(0);
+    }
+
+    public boolean isPrimary(String login) {
+        return primary(login).equals(self);
+    }
+
+    public boolean isOwner(String login) {
+        return owners(login).contains(self);
+    }
+
+    public List<String> replicas(String login) {
+        List<String> owners = owners(login);
+        return isPrimary(login) ? owners.subList(1, owners.size()) : List.of();
+    }
+
+    public boolean checkSecret(String secret) {
+        return isEnabled() && MessageDigest.isEqual(digest(this.secret), digest(secret));
+    }
+
+    public String secret() {
+        return secret;
+    }
+
+    private static byte[] digest(String value) {
+        return Chunker.newDigest().digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long hash(String key) {
+        return ByteBuffer.wrap(Chunker.newDigest().digest(key.getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+}
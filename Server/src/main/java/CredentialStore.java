@@ -0,0 +1,147 @@
+import java.sql.*;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+public class CredentialStore implements AutoCloseable {
+    public record Account(String password, long bandwidth, int weight) {
+    }
+
+    private static final String SELECT_ACCOUNT = "SELECT Password, Bandwidth, Weight FROM LogPass WHERE Login = ?;";
+    private static final String INSERT_USER = "INSERT OR IGNORE INTO LogPass (Login, Password, Bandwidth, Weight) VALUES (?, ?, ?, ?);";
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    private record Reader(Connection connection, PreparedStatement selectAccount) {
+    }
+
+    private final BlockingQueue<Reader> readers;
+    private final ExecutorService readExecutor;
+
+    private final Connection writeConnection;
+    private final PreparedStatement insertUser;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    private final Map<String, Optional<Account>> cache;
+
+    public CredentialStore(String url, int readersNum, int cacheSize) throws SQLException {
+        writeConnection = openConnection(url);
+        try (Statement statement = writeConnection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL;");
+        }
+        addLimitColumns();
+        insertUser = writeConnection.prepareStatement(INSERT_USER);
+
+        readers = new ArrayBlockingQueue<>(readersNum);
+        for (int i = 0; i < readersNum; i++) {
+            Connection connection = openConnection(url);
+            readers.add(new Reader(connection, connection.prepareStatement(SELECT_ACCOUNT)));
+        }
+        readExecutor = Executors.newFixedThreadPool(readersNum);
+
+        cache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<Account>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    private void addLimitColumns() throws SQLException {
+        try (Statement statement = writeConnection.createStatement()) {
+            Set<String> columns = new HashSet<>();
+            try (ResultSet resultSet = statement.executeQuery("PRAGMA table_info(LogPass);")) {
+                while (resultSet.next()) {
+                    columns.add(resultSet.getString("name"));
+                }
+            }
+
+            if (!columns.contains("Bandwidth")) {
+                statement.execute("ALTER TABLE LogPass ADD COLUMN Bandwidth INTEGER NOT NULL DEFAULT 0;");
+            }
+            if (!columns.contains("Weight")) {
+                statement.execute("ALTER TABLE LogPass ADD COLUMN Weight INTEGER NOT NULL DEFAULT 1;");
+            }
+        }
+    }
+
+    private static Connection openConnection(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS + ";");
+        }
+        return connection;
+    }
+
+    public CompletableFuture<String> findPassword(String login) {
+        return findAccount(login).thenApply(account -> account == null ? null : account.password());
+    }
+
+    public CompletableFuture<Account> findAccount(String login) {
+        Optional<Account> cached;
+        synchronized (cache) {
+            cached = cache.get(login);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.orElse(null));
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            Reader reader = readers.poll();
+            try {
+                reader.selectAccount().setString(1, login);
+                Account account;
+                try (ResultSet resultSet = reader.selectAccount().executeQuery()) {
+                    account = resultSet.next() ? new Account(resultSet.getString(1), resultSet.getLong(2), resultSet.getInt(3)) : null;
+                }
+
+                synchronized (cache) {
+                    cache.putIfAbsent(login, Optional.ofNullable(account));
+                }
+                return account;
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                readers.add(reader);
+            }
+        }, readExecutor);
+    }
+
+    public CompletableFuture<Boolean> addUser(String login, String password) {
+        return addUser(login, new Account(password, 0, 1));
+    }
+
+    public CompletableFuture<Boolean> addUser(String login, Account account) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                insertUser.setString(1, login);
+                insertUser.setString(2, account.password());
+                insertUser.setLong(3, account.bandwidth());
+                insertUser.setInt(4, account.weight());
+                boolean isAdded = insertUser.executeUpdate() == 1;
+
+                if (isAdded) {
+                    synchronized (cache) {
+                        cache.put(login, Optional.of(account));
+                    }
+                }
+                return isAdded;
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, writeExecutor);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+
+        for (Reader reader : readers) {
+            reader.connection().close();
+        }
+        writeConnection.close();
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class GroupCommit implements AutoCloseable {
+    private record Request(List<Path> files, List<Path> dirs, boolean isIndex, CompletableFuture<Void> future) {
+    }
+
+    private static final Request STOP = new Request(List.of(), List.of(), false, null);
+
+    private final MetadataIndex metadataIndex;
+    private final ServerMetrics metrics;
+    private final boolean isEnabled;
+    private final long windowNanos;
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    public GroupCommit(MetadataIndex metadataIndex, ServerMetrics metrics, boolean isEnabled, long windowMicros) {
+        this.metadataIndex = metadataIndex;
+        this.metrics = metrics;
+        this.isEnabled = isEnabled;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.thread = new Thread(this::run, "group-commit");
+        this.thread.setDaemon(true);
+        if (isEnabled) {
+            thread.start();
+        }
+    }
+
+    public CompletableFuture<Void> syncFile(Path file) {
+        return submit(List.of(file), List.of(), false);
+    }
+
+    public CompletableFuture<Void> syncFiles(List<Path> files) {
+        return submit(files, List.of(), false);
+    }
+
+    public CompletableFuture<Void> syncDirs(List<Path> dirs) {
+        return submit(List.of(), dirs, false);
+    }
+
+    public CompletableFuture<Void> syncPublished(List<Path> dirs) {
+        return submit(List.of(), dirs, true);
+    }
+
+    private CompletableFuture<Void> submit(List<Path> files, List<Path> dirs, boolean isIndex) {
+        if (!isEnabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        requests.add(new Request(files, dirs, isIndex, future));
+        return future;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(requests.take());
+                if (windowNanos > 0) {
+                    long deadline = System.nanoTime() + windowNanos;
+                    for (long timeout = windowNanos; timeout > 0; timeout = deadline - System.nanoTime()) {
+                        Request request = requests.poll(timeout, TimeUnit.NANOSECONDS);
+                        if (request == null) {
+                            break;
+                        }
+                        batch.add(request);
+                    }
+                }
+                requests.drainTo(batch);
+
+                boolean isStopped = batch.remove(STOP);
+                sync(batch);
+                batch.clear();
+                if (isStopped) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Request request : batch) {
+                request.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void sync(List<Request> batch) {
+        Set<Path> files = new LinkedHashSet<>();
+        Set<Path> dirs = new LinkedHashSet<>();
+        boolean isIndex = false;
+        for (Request request : batch) {
+            files.addAll(request.files());
+            dirs.addAll(request.dirs());
+            isIndex |= request.isIndex();
+        }
+
+        long startTime = System.nanoTime();
+        Map<Path, IOException> failures = new HashMap<>();
+        for (Path file : files) {
+            try {
+                force(file);
+            } catch (IOException e) {
+                failures.put(file, e);
+            }
+        }
+        for (Path dir : dirs) {
+            try {
+                forceDir(dir);
+            } catch (IOException e) {
+                failures.put(dir, e);
+            }
+        }
+        IOException indexFailure = null;
+        if (isIndex) {
+            try {
+                metadataIndex.sync();
+            } catch (IOException e) {
+                indexFailure = e;
+            }
+        }
+        metrics.recordSync(files.size() + dirs.size() + (isIndex ? 1 : 0), System.nanoTime() - startTime);
+
+        for (Request request : batch) {
+            IOException failure = request.isIndex() ? indexFailure : null;
+            for (Path path : request.files()) {
+                failure = failure != null ? failure : failures.get(path);
+            }
+            for (Path path : request.dirs()) {
+                failure = failure != null ? failure : failures.get(path);
+            }
+
+            if (failure != null) {
+                request.future().completeExceptionally(failure);
+            } else {
+                request.future().complete(null);
+            }
+        }
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            fileChannel.force(false);
+        }
+    }
+
+    public static void forceDir(Path dir) throws IOException {
+        try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (isEnabled) {
+            requests.add(STOP);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LatencyMetricsHandler extends ChannelDuplexHandler {
+    private record PendingCommand(String command, long startTime) {
+    }
+
+    private final ServerMetrics metrics;
+    private final Map<Long, PendingCommand> pendingCommands = new HashMap<>();
+
+    public LatencyMetricsHandler(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Message request) {
+            pendingCommands.putIfAbsent(request.id(), new PendingCommand(request.command(), System.nanoTime()));
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof Message response
+                && (response.command().equals(Message.REPORT_COMMAND) || response.command().equals(Message.CRUSH_COMMAND))) {
+            PendingCommand pending = pendingCommands.remove(response.id());
+            if (pending != null) {
+                metrics.recordCommand(pending.command(), System.nanoTime() - pending.startTime());
+            }
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        pendingCommands.clear();
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,320 @@
+import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class MetadataIndex implements AutoCloseable {
+    public record Entry(String name, boolean isDirectory, long size, long modified) {
+    }
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final byte PUT_RECORD = 1;
+    private static final byte REMOVE_RECORD = 2;
+    private static final byte NAMESPACE_RECORD = 3;
+
+    private final Path rootDir;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final ChunkStore chunkStore;
+    private final int journalLimit;
+
+    private final Map<String, NavigableMap<String, FileMeta>> namespaces = new ConcurrentHashMap<>();
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+    private DataOutputStream journal;
+    private FileChannel journalChannel;
+    private int journalSize;
+    private volatile Consumer<Path> listener = file -> {
+    };
+
+    public MetadataIndex(Path rootDir, Path indexDir, ChunkStore chunkStore, int journalLimit, boolean rebuild) throws IOException {
+        this.rootDir = rootDir;
+        this.snapshotPath = indexDir.resolve("snapshot");
+        this.journalPath = indexDir.resolve("journal");
+        this.chunkStore = chunkStore;
+        this.journalLimit = journalLimit;
+        Files.createDirectories(indexDir);
+
+        boolean isCurrent = !rebuild && (!Files.exists(snapshotPath) || loadSnapshot());
+        if (isCurrent && Files.exists(journalPath)) {
+            replayJournal();
+        }
+        checkpoint();
+    }
+
+    public FileMeta find(Path file) throws IOException {
+        return namespace(file.getName(0).toString()).get(key(file));
+    }
+
+    public synchronized void put(Path file, FileMeta meta) throws IOException {
+        String login = file.getName(0).toString();
+        namespace(login).put(key(file), meta);
+        advance(login);
+        writePut(login, key(file), meta);
+        afterRecord();
+        listener.accept(file);
+    }
+
+    public synchronized void remove(Path file) throws IOException {
+        String login = file.getName(0).toString();
+        if (namespace(login).remove(key(file)) != null) {
+            advance(login);
+            journal.writeByte(REMOVE_RECORD);
+            journal.writeUTF(login);
+            journal.writeUTF(key(file));
+            afterRecord();
+            listener.accept(file);
+        }
+    }
+
+    public long generation(String login) {
+        return generations.computeIfAbsent(login, l -> ThreadLocalRandom.current().nextLong());
+    }
+
+    private void advance(String login) {
+        generations.compute(login, (l, generation) -> generation == null ? ThreadLocalRandom.current().nextLong() : generation + 1);
+    }
+
+    public void setListener(Consumer<Path> listener) {
+        this.listener = listener;
+    }
+
+    public List<Entry> list(Path dir, long skip, int limit) throws IOException {
+        NavigableMap<String, FileMeta> files = namespace(dir.getName(0).toString());
+        String prefix = dir.getNameCount() > 1 ? key(dir) + "/" : "";
+
+        List<Entry> entries = new ArrayList<>();
+        String key = files.ceilingKey(prefix);
+        while (key != null && key.startsWith(prefix) && entries.size() < limit) {
+            int separator = key.indexOf('/', prefix.length());
+            if (separator < 0) {
+                if (skip-- <= 0) {
+                    FileMeta meta = files.get(key);
+                    if (meta != null) {
+                        entries.add(new Entry(key.substring(prefix.length()), false, meta.size(), meta.modified()));
+                    }
+                }
+                key = files.higherKey(key);
+            } else {
+                if (skip-- <= 0) {
+                    entries.add(new Entry(key.substring(prefix.length(), separator), true, 0, 0));
+                }
+                key = files.higherKey(key.substring(0, separator + 1) + Character.MAX_VALUE);
+            }
+        }
+        return entries;
+    }
+
+    public List<Path> walk(Path dir) throws IOException {
+        String login = dir.getName(0).toString();
+        String prefix = dir.getNameCount() > 1 ? key(dir) + "/" : "";
+
+        List<Path> files = new ArrayList<>();
+        for (String key : namespace(login).subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+            files.add(Path.of(login, key));
+        }
+        return files;
+    }
+
+    public NavigableMap<String, FileMeta> tree(Path dir) throws IOException {
+        NavigableMap<String, FileMeta> files = namespace(dir.getName(0).toString());
+        String prefix = dir.getNameCount() > 1 ? key(dir) + "/" : "";
+        return Collections.unmodifiableNavigableMap(files.subMap(prefix, true, prefix + Character.MAX_VALUE, false));
+    }
+
+    private NavigableMap<String, FileMeta> namespace(String login) throws IOException {
+        NavigableMap<String, FileMeta> files = namespaces.get(login);
+        if (files != null) {
+            return files;
+        }
+
+        synchronized (this) {
+            files = namespaces.get(login);
+            if (files == null) {
+                files = scan(login);
+                namespaces.put(login, files);
+
+                journal.writeByte(NAMESPACE_RECORD);
+                journal.writeUTF(login);
+                for (Map.Entry<String, FileMeta> file : files.entrySet()) {
+                    writePut(login, file.getKey(), file.getValue());
+                }
+                afterRecord();
+            }
+            return files;
+        }
+    }
+
+    private NavigableMap<String, FileMeta> scan(String login) throws IOException {
+        NavigableMap<String, FileMeta> files = new ConcurrentSkipListMap<>();
+
+        Path userDir = rootDir.resolve(login);
+        if (Files.isDirectory(userDir)) {
+            try (Stream<Path> paths = Files.walk(userDir)) {
+                for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                    files.put(key(rootDir.relativize(path)), StreamDigest.describe(path));
+                }
+            }
+        }
+
+        if (chunkStore != null) {
+            for (Path file : chunkStore.listManifests(Path.of(login))) {
+                List<ChunkStore.ChunkRef> chunks = chunkStore.readManifest(file);
+                try (InputStream inputStream = chunkStore.openStream(chunks)) {
+                    files.put(key(file), StreamDigest.describe(inputStream, ChunkStore.size(chunks), chunkStore.lastModified(file)));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String key(Path file) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 1; i < file.getNameCount(); i++) {
+            key.append(i > 1 ? "/" : "").append(file.getName(i));
+        }
+        return key.toString();
+    }
+
+    private void writePut(String login, String key, FileMeta meta) throws IOException {
+        journal.writeByte(PUT_RECORD);
+        journal.writeUTF(login);
+        journal.writeUTF(key);
+        writeMeta(journal, meta);
+    }
+
+    private void afterRecord() throws IOException {
+        journal.flush();
+        if (++journalSize >= journalLimit) {
+            checkpoint();
+        }
+    }
+
+    private static void writeMeta(DataOutputStream outputStream, FileMeta meta) throws IOException {
+        outputStream.writeLong(meta.size());
+        outputStream.writeLong(meta.modified());
+        outputStream.writeInt(meta.crc());
+        outputStream.write(meta.hash());
+        for (int rangeCrc : meta.rangeCrcs()) {
+            outputStream.writeInt(rangeCrc);
+        }
+    }
+
+    private static FileMeta readMeta(DataInputStream inputStream) throws IOException {
+        long size = inputStream.readLong();
+        long modified = inputStream.readLong();
+        int crc = inputStream.readInt();
+        byte[] hash = new byte[Chunker.HASH_SIZE];
+        inputStream.readFully(hash);
+        int[] rangeCrcs = new int[FileMeta.rangesNum(size)];
+        for (int range = 0; range < rangeCrcs.length; range++) {
+            rangeCrcs[range] = inputStream.readInt();
+        }
+        return new FileMeta(size, modified, crc, hash, rangeCrcs);
+    }
+
+    private boolean loadSnapshot() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (inputStream.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+            for (int namespacesNum = inputStream.readInt(); namespacesNum > 0; namespacesNum--) {
+                NavigableMap<String, FileMeta> files = new ConcurrentSkipListMap<>();
+                namespaces.put(inputStream.readUTF(), files);
+                for (int filesNum = inputStream.readInt(); filesNum > 0; filesNum--) {
+                    files.put(inputStream.readUTF(), readMeta(inputStream));
+                }
+            }
+        }
+        return true;
+    }
+
+    private void replayJournal() throws IOException {
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+            while (true) {
+                byte record = inputStream.readByte();
+                String login = inputStream.readUTF();
+                switch (record) {
+                    case NAMESPACE_RECORD -> namespaces.put(login, new ConcurrentSkipListMap<>());
+                    case PUT_RECORD -> {
+                        String key = inputStream.readUTF();
+                        FileMeta meta = readMeta(inputStream);
+                        namespaces.computeIfAbsent(login, l -> new ConcurrentSkipListMap<>()).put(key, meta);
+                    }
+                    case REMOVE_RECORD -> {
+                        String key = inputStream.readUTF();
+                        NavigableMap<String, FileMeta> files = namespaces.get(login);
+                        if (files != null) {
+                            files.remove(key);
+                        }
+                    }
+                    default -> throw new IOException("Повреждён журнал индекса файлов");
+                }
+            }
+        } catch (EOFException e) {
+            return;
+        }
+    }
+
+    public synchronized void checkpoint() throws IOException {
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeInt(namespaces.size());
+            for (Map.Entry<String, NavigableMap<String, FileMeta>> namespace : namespaces.entrySet()) {
+                outputStream.writeUTF(namespace.getKey());
+                List<Map.Entry<String, FileMeta>> files = new ArrayList<>(namespace.getValue().entrySet());
+                outputStream.writeInt(files.size());
+                for (Map.Entry<String, FileMeta> file : files) {
+                    outputStream.writeUTF(file.getKey());
+                    writeMeta(outputStream, file.getValue());
+                }
+            }
+        }
+        try (FileChannel snapshotChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            snapshotChannel.force(false);
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        GroupCommit.forceDir(snapshotPath.getParent());
+
+        if (journal != null) {
+            journal.close();
+        }
+        FileOutputStream outputStream = new FileOutputStream(journalPath.toFile());
+        journalChannel = outputStream.getChannel();
+        journal = new DataOutputStream(new BufferedOutputStream(outputStream));
+        journalSize = 0;
+    }
+
+    public void sync() throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            journal.flush();
+            channel = journalChannel;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            return;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        checkpoint();
+        journal.close();
+    }
+}
@@ -0,0 +1,105 @@
+import io.netty.buffer.ByteBuf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class PendingUpdate implements Delta.BlockSource, Closeable {
+    private final Path tempPath;
+    private final FileChannel target;
+    private final int blockSize;
+    private final StreamDigest digest = new StreamDigest();
+    private final WritableByteChannel digestTarget = new DigestChannel();
+
+    private final FileChannel source;
+    private final List<ChunkStore.ChunkRef> chunks;
+    private final ChunkStore chunkStore;
+    private final long sourceSize;
+
+    public PendingUpdate(Path path, Path tempDir, List<ChunkStore.ChunkRef> chunks, ChunkStore chunkStore, int blockSize) throws IOException {
+        this.tempPath = Files.createTempFile(Files.createDirectories(tempDir), "." + path.getFileName(), ".upd");
+        this.target = FileChannel.open(tempPath, StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+
+        this.chunks = chunks;
+        this.chunkStore = chunkStore;
+        this.source = chunks == null ? FileChannel.open(path, StandardOpenOption.READ) : null;
+        this.sourceSize = chunks == null ? source.size() : ChunkStore.size(chunks);
+    }
+
+    public Path tempPath() {
+        return tempPath;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public StreamDigest digest() {
+        return digest;
+    }
+
+    @Override
+    public void copy(long offset, long length) throws IOException {
+        if (offset < 0 || offset >= sourceSize) {
+            throw new IOException("Некорректная ссылка на блок файла");
+        }
+
+        length = Math.min(length, sourceSize - offset);
+        if (source != null) {
+            for (long copied = 0; copied < length; ) {
+                copied += source.transferTo(offset + copied, length - copied, digestTarget);
+            }
+        } else {
+            chunkStore.transferRange(chunks, offset, length, digestTarget);
+        }
+    }
+
+    @Override
+    public void write(ByteBuf data) throws IOException {
+        for (ByteBuffer buffer : data.nioBuffers()) {
+            digest.update(buffer);
+        }
+        while (data.isReadable()) {
+            data.readBytes(target, data.readableBytes());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        target.close();
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    public void abort() throws IOException {
+        close();
+        Files.deleteIfExists(tempPath);
+    }
+
+    private class DigestChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer buffer) throws IOException {
+            ByteBuffer written = buffer.duplicate();
+            int length = target.write(buffer);
+            digest.update(written.limit(written.position() + length));
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
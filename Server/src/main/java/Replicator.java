@@ -0,0 +1,298 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class Replicator implements AutoCloseable {
+    private static final int WINDOW_SIZE = 8;
+    private static final long REBALANCE_RETRY_MS = Long.getLong("netstorage.cluster.retry", 5000);
+    private static final long CLOSE_TIMEOUT_MS = 10000;
+
+    private final Cluster cluster;
+    private final Path rootDir;
+    private final ChunkStore chunkStore;
+    private final MetadataIndex metadataIndex;
+    private final CredentialStore credentialStore;
+
+    private final EventLoopGroup workerGroup = Transport.newEventLoopGroup(1);
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+    private final Map<String, ServerConnection> connections = new HashMap<>();
+    private final Set<Path> pendingFiles = ConcurrentHashMap.newKeySet();
+    private final Set<String> failedUsers = new LinkedHashSet<>();
+    private final Set<Path> failedFiles = new LinkedHashSet<>();
+    private boolean isRetryScheduled;
+
+    public Replicator(Cluster cluster, Path rootDir, ChunkStore chunkStore, MetadataIndex metadataIndex, CredentialStore credentialStore) {
+        this.cluster = cluster;
+        this.rootDir = rootDir;
+        this.chunkStore = chunkStore;
+        this.metadataIndex = metadataIndex;
+        this.credentialStore = credentialStore;
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void fileChanged(Path file) {
+        String login = file.getName(0).toString();
+        List<String> replicas = cluster.replicas(login);
+        if (replicas.isEmpty() || !pendingFiles.add(file)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            pendingFiles.remove(file);
+            for (String replica : replicas) {
+                try {
+                    sendFile(replica, file);
+                } catch (Exception e) {
+                    dropConnection(replica, "Не удалось передать файл " + file + " на узел " + replica, e);
+                    failedFiles.add(file);
+                    retryLater();
+                }
+            }
+        });
+    }
+
+    public void userAdded(String login) {
+        List<String> replicas = cluster.replicas(login);
+        if (replicas.isEmpty()) {
+            return;
+        }
+
+        executor.execute(() -> {
+            for (String replica : replicas) {
+                try {
+                    sendUser(replica, login);
+                } catch (Exception e) {
+                    dropConnection(replica, "Не удалось передать пользователя " + login + " на узел " + replica, e);
+                    failedUsers.add(login);
+                    retryLater();
+                }
+            }
+        });
+    }
+
+    public void rebalance() {
+        executor.execute(() -> {
+            Set<String> logins;
+            try {
+                logins = localLogins();
+            } catch (IOException e) {
+                System.err.println("Не удалось получить список пользователей: " + e);
+                return;
+            }
+
+            boolean isCompleted = true;
+            for (String login : logins) {
+                List<String> owners = cluster.owners(login);
+                if (owners.contains(cluster.self()) && !cluster.isPrimary(login)) {
+                    continue;
+                }
+
+                boolean isSent = true;
+                for (String owner : owners) {
+                    if (owner.equals(cluster.self())) {
+                        continue;
+                    }
+                    try {
+                        sendUser(owner, login);
+                        for (Path file : metadataIndex.walk(Path.of(login))) {
+                            sendFile(owner, file);
+                        }
+                    } catch (Exception e) {
+                        isSent = false;
+                        isCompleted = false;
+                        dropConnection(owner, "Не удалось передать данные пользователя " + login + " на узел " + owner, e);
+                    }
+                }
+
+                if (isSent && !owners.contains(cluster.self())) {
+                    try {
+                        removeLocal(login);
+                    } catch (IOException e) {
+                        System.err.println("Не удалось удалить переданные данные пользователя " + login + ": " + e);
+                    }
+                }
+            }
+
+            if (!isCompleted) {
+                executor.schedule(this::rebalance, REBALANCE_RETRY_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private void retryLater() {
+        if (!isRetryScheduled && !executor.isShutdown()) {
+            isRetryScheduled = true;
+            executor.schedule(this::retry, REBALANCE_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void retry() {
+        isRetryScheduled = false;
+        List<String> logins = new ArrayList<>(failedUsers);
+        List<Path> files = new ArrayList<>(failedFiles);
+        failedUsers.clear();
+        failedFiles.clear();
+        logins.forEach(this::userAdded);
+        files.forEach(this::fileChanged);
+    }
+
+    private Set<String> localLogins() throws IOException {
+        Set<String> logins = new TreeSet<>();
+        try (Stream<Path> dirs = Files.list(rootDir)) {
+            dirs.filter(Files::isDirectory).map(dir -> dir.getFileName().toString())
+                    .filter(name -> !name.startsWith(".")).forEach(logins::add);
+        }
+        if (chunkStore != null) {
+            for (Path file : chunkStore.listManifests(Path.of(""))) {
+                logins.add(file.getName(0).toString());
+            }
+        }
+        return logins;
+    }
+
+    private void removeLocal(String login) throws IOException {
+        for (Path file : metadataIndex.walk(Path.of(login))) {
+            if (chunkStore == null || !chunkStore.deleteManifest(file)) {
+                Files.deleteIfExists(rootDir.resolve(file));
+            }
+            metadataIndex.remove(file);
+        }
+    }
+
+    private void sendUser(String node, String login) throws IOException, InterruptedException {
+        CredentialStore.Account account = credentialStore.findAccount(login).join();
+        if (account == null) {
+            return;
+        }
+
+        ByteBuf data = Unpooled.buffer();
+        byte[] password = account.password().getBytes(StandardCharsets.UTF_8);
+        MessageEncoder.writeVarLong(data, password.length);
+        data.writeBytes(password);
+        MessageEncoder.writeVarLong(data, account.bandwidth());
+        MessageEncoder.writeVarLong(data, account.weight());
+        request(node, Message.REPLICA_USER_COMMAND, login, 0, data);
+    }
+
+    private void sendFile(String node, Path file) throws IOException, InterruptedException {
+        String path = file.toString();
+        FileMeta meta = metadataIndex.find(file);
+        if (meta == null) {
+            request(node, Message.REPLICA_DELETE_COMMAND, path, 0, Unpooled.EMPTY_BUFFER);
+            return;
+        }
+        if (request(node, Message.REPLICA_CHECK_COMMAND, path, 0, Unpooled.wrappedBuffer(meta.hash()))) {
+            return;
+        }
+
+        Path filePath = rootDir.resolve(file);
+        List<ChunkStore.ChunkRef> chunks = Files.isRegularFile(filePath) || chunkStore == null ? null : chunkStore.readManifest(file);
+        ServerConnection connection = connection(node);
+        RequestWindow window = new RequestWindow(WINDOW_SIZE);
+        try (InputStream inputStream = chunks == null ? Files.newInputStream(filePath) : chunkStore.openStream(chunks)) {
+            long offset = 0;
+            do {
+                int partSize = (int) Math.min(Message.MAX_DATA_SIZE, meta.size() - offset);
+                ByteBuf data = readPart(inputStream, partSize, file);
+                long partOffset = offset;
+                window.submit(() -> connection.request(Message.REPLICA_PUT_COMMAND, path, partOffset, data, null));
+                offset += partSize;
+            } while (offset < meta.size() && !window.isFailed());
+        }
+        window.await();
+
+        ByteBuf commit = Unpooled.buffer(Long.BYTES + meta.hash().length).writeLong(meta.modified()).writeBytes(meta.hash());
+        if (!request(node, Message.REPLICA_COMMIT_COMMAND, path, 0, commit)) {
+            throw new IOException("Узел " + node + " не принял файл " + file);
+        }
+        if (metadataIndex.find(file) != meta) {
+            fileChanged(file);
+        }
+    }
+
+    private static ByteBuf readPart(InputStream inputStream, int partSize, Path file) throws IOException {
+        ByteBuf data = PooledByteBufAllocator.DEFAULT.ioBuffer(partSize + Checksum.SIZE);
+        try {
+            while (data.readableBytes() < partSize) {
+                if (data.writeBytes(inputStream, partSize - data.readableBytes()) < 0) {
+                    throw new IOException("Файл " + file + " изменился во время отправки");
+                }
+            }
+        } catch (IOException e) {
+            data.release();
+            throw e;
+        }
+        return Checksum.seal(data);
+    }
+
+    private boolean request(String node, String command, String path, long offset, ByteBuf data) throws IOException, InterruptedException {
+        Message response = connection(node).request(command, path, offset, data, null).join();
+        try {
+            return response.code() == Message.SUCCESS_CODE;
+        } finally {
+            response.release();
+        }
+    }
+
+    private ServerConnection connection(String node) throws IOException, InterruptedException {
+        ServerConnection connection = connections.get(node);
+        if (connection != null) {
+            return connection;
+        }
+
+        int separator = node.lastIndexOf(':');
+        connection = new ServerConnection(workerGroup, node.substring(0, separator), Integer.parseInt(node.substring(separator + 1)));
+        Message response = connection.request(Message.PEER_COMMAND, cluster.self(),
+                Unpooled.copiedBuffer(cluster.secret(), StandardCharsets.UTF_8)).join();
+        try {
+            if (response.code() != Message.SUCCESS_CODE) {
+                connection.close();
+                throw new IOException("Узел " + node + " отклонил подключение");
+            }
+        } finally {
+            response.release();
+        }
+
+        connections.put(node, connection);
+        return connection;
+    }
+
+    private void dropConnection(String node, String message, Exception cause) {
+        System.err.println(message + ": " + cause);
+        ServerConnection connection = connections.remove(node);
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                for (ServerConnection connection : connections.values()) {
+                    connection.close();
+                }
+            } else {
+                executor.shutdownNow();
+            }
+            workerGroup.shutdownGracefully().sync();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            workerGroup.shutdownGracefully();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,176 +1,157 @@
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
-
-import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 public class Server {
-    public static final int MAX_OBJECT_SIZE = 1024 * 1024;
-    public static final int MAX_DATA_SIZE = MAX_OBJECT_SIZE - 2 * 1024;
-
-    public static final int SERVER_PORT = 10000;
-    public static final int CONNECTION_PORT = 10001;
-
-    public static final int SUCCESS_CODE = 0;
-    public static final int FAILURE_CODE = 1;
-
-    private static Connection sqlConnection;
-
-    private static volatile boolean wasNewConnection;
-    private static final ArrayList<Integer> queue = new ArrayList<>();
-    private static int connections = 0;
+    public static final Path ROOT_DIR = System.getProperty("netstorage.root") != null
+            ? Path.of(System.getProperty("netstorage.root"))
+            : new File(
+            new File(new File(Objects.requireNonNull(Server.class.getResource("/")).getPath()).getParent()).getParent()
+    ).toPath().getFileName();
+
+    private static final MessageEncoder MESSAGE_ENCODER = new MessageEncoder();
+    private static final FileStreamEncoder FILE_STREAM_ENCODER = new FileStreamEncoder();
+
+    private static final int PORT = Integer.getInteger("netstorage.port", Message.SERVER_PORT);
+    private static final String DB_PATH = System.getProperty("netstorage.db", "DataBase.db");
+
+    private static final int MAX_USERS_NUM = Integer.getInteger("netstorage.max.users", 2);
+    private static final long QUEUE_NOTIFY_INTERVAL = Long.getLong("netstorage.queue.interval", 1000);
+    private static final AdmissionQueue admissionQueue = new AdmissionQueue(MAX_USERS_NUM, QUEUE_NOTIFY_INTERVAL);
+    private static final SessionRegistry sessionRegistry = new SessionRegistry();
+    private static final ServerMetrics metrics = new ServerMetrics(admissionQueue);
+    private static final int DB_READERS_NUM = Integer.getInteger("netstorage.db.readers", 4);
+    private static final int CREDENTIALS_CACHE_SIZE = Integer.getInteger("netstorage.credentials.cache", 1024);
+
+    private static final int STORAGE_THREADS_NUM = Integer.getInteger("netstorage.storage.threads", 16);
+    private static final boolean STORAGE_VIRTUAL_THREADS = Boolean.getBoolean("netstorage.storage.virtual");
+    private static final boolean STORAGE_DEDUP = Boolean.getBoolean("netstorage.store.dedup");
+    private static final int INDEX_JOURNAL_SIZE = Integer.getInteger("netstorage.index.journal", 10000);
+    private static final boolean INDEX_REBUILD = Boolean.getBoolean("netstorage.index.rebuild");
+    private static final boolean FSYNC_ENABLED = Boolean.parseBoolean(System.getProperty("netstorage.fsync", "true"));
+    private static final long FSYNC_WINDOW = Long.getLong("netstorage.fsync.window", 0);
+    private static final long CACHE_SIZE = Long.getLong("netstorage.cache.size", 64L * 1024 * 1024);
+
+    private static final int BOSS_THREADS_NUM = Integer.getInteger("netstorage.boss.threads", 1);
+    private static final int WORKER_THREADS_NUM = Integer.getInteger("netstorage.worker.threads", 0);
+    private static final int WRITE_BUFFER_LOW = Integer.getInteger("netstorage.write.low", 1024 * 1024);
+    private static final int WRITE_BUFFER_HIGH = Integer.getInteger("netstorage.write.high", 2 * 1024 * 1024);
+    private static final int MAX_PENDING_REQUESTS = Integer.getInteger("netstorage.pending.requests", 64);
+    private static final long GLOBAL_BANDWIDTH = Long.getLong("netstorage.bandwidth.global", 0);
+    private static final long USER_BANDWIDTH = Long.getLong("netstorage.bandwidth.user", 0);
+    private static final BandwidthScheduler bandwidthScheduler = new BandwidthScheduler(GLOBAL_BANDWIDTH, USER_BANDWIDTH);
+
+    private static final String CLUSTER_NODES = System.getProperty("netstorage.cluster.nodes", "");
+    private static final String CLUSTER_SELF = System.getProperty("netstorage.cluster.self", "localhost:" + PORT);
+    private static final int CLUSTER_REPLICAS = Integer.getInteger("netstorage.cluster.replicas", 1);
+    private static final String CLUSTER_SECRET = System.getProperty("netstorage.cluster.secret");
+    private static final Cluster cluster = Cluster.parse(CLUSTER_SELF, CLUSTER_NODES, CLUSTER_REPLICAS, CLUSTER_SECRET);
+
+    public static final boolean COMPRESSION_ENABLED = Boolean.parseBoolean(System.getProperty("netstorage.compression", "true"));
+    public static final int COMPRESSION_LEVEL = Integer.getInteger("netstorage.compression.level", Deflater.BEST_SPEED);
+
+    public static void main(String[] args) throws SQLException, InterruptedException, IOException, JMException {
+        deleteDir(ROOT_DIR.resolve(ServerHandler.UPLOAD_DIR));
+        deleteDir(ROOT_DIR.resolve(ServerHandler.REPLICA_DIR));
+        ChunkStore chunkStore = STORAGE_DEDUP ? new ChunkStore(ROOT_DIR.resolve(".store")) : null;
+        BlockCache blockCache = CACHE_SIZE > 0 ? new BlockCache(CACHE_SIZE) : null;
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName("NetStorage:type=Server"));
+        if (blockCache != null) {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(blockCache, new ObjectName("NetStorage:type=BlockCache"));
+        }
 
-    public static void main(String[] args) throws SQLException, IOException {
-        new Thread(() -> {
-            try {
-                processServer();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        try (CredentialStore credentialStore = new CredentialStore("jdbc:sqlite:" + DB_PATH, DB_READERS_NUM, CREDENTIALS_CACHE_SIZE);
+             StorageExecutor storageExecutor = StorageExecutor.create(STORAGE_THREADS_NUM, STORAGE_VIRTUAL_THREADS);
+             MetadataIndex metadataIndex = new MetadataIndex(ROOT_DIR, ROOT_DIR.resolve(".index"), chunkStore, INDEX_JOURNAL_SIZE, INDEX_REBUILD);
+             GroupCommit groupCommit = newGroupCommit(metadataIndex, FSYNC_ENABLED);
+             Replicator replicator = cluster.isEnabled() ? new Replicator(cluster, ROOT_DIR, chunkStore, metadataIndex, credentialStore) : null) {
+            if (replicator != null) {
+                metadataIndex.setListener(replicator::fileChanged);
+                replicator.rebalance();
             }
-        }).start();
-
-        sqlConnection = DriverManager.getConnection("jdbc:sqlite:DataBase.db");
+            processServer(credentialStore, storageExecutor, chunkStore, metadataIndex, blockCache, groupCommit, replicator);
+        }
+    }
 
-        ServerSocket connector = new ServerSocket(CONNECTION_PORT);
-        while (true) {
-            wasNewConnection = false;
+    public static GroupCommit newGroupCommit(MetadataIndex metadataIndex, boolean isEnabled) {
+        return new GroupCommit(metadataIndex, metrics, isEnabled, FSYNC_WINDOW);
+    }
 
-            new Thread(() -> {
-                try {
-                    Socket socket = connector.accept();
-                    wasNewConnection = true;
+    private static void deleteDir(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
 
-                    DataInput inputStream = new DataInputStream(socket.getInputStream());
-                    DataOutput outputStream = new DataOutputStream(socket.getOutputStream());
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
 
-                    connect(outputStream);
-                    authorize(inputStream, outputStream);
-                    disconnect(inputStream);
+    private static void processServer(CredentialStore credentialStore, StorageExecutor storageExecutor,
+                                      ChunkStore chunkStore, MetadataIndex metadataIndex, BlockCache blockCache,
+                                      GroupCommit groupCommit, Replicator replicator)
+            throws InterruptedException {
+        EventLoopGroup bossGroup = Transport.newEventLoopGroup(BOSS_THREADS_NUM);
+        EventLoopGroup workerGroup = Transport.newEventLoopGroup(WORKER_THREADS_NUM);
 
-                    socket.close();
-                } catch (IOException | SQLException e) {
-                    throw new RuntimeException(e);
-                }
-            }).start();
+        Channel channel = bind(PORT, ROOT_DIR, bossGroup, workerGroup,
+                credentialStore, storageExecutor, chunkStore, metadataIndex, blockCache, groupCommit, replicator);
+        channel.closeFuture().sync();
 
-            while (!wasNewConnection) {
-                Thread.onSpinWait();
-            }
-        }
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
     }
 
-    private static void processServer() throws InterruptedException {
-        final int N_THREADS = 1;
+    public static Channel bind(int port, Path rootDir, EventLoopGroup bossGroup, EventLoopGroup workerGroup,
+                               CredentialStore credentialStore, StorageExecutor storageExecutor,
+                               ChunkStore chunkStore, MetadataIndex metadataIndex, BlockCache blockCache,
+                               GroupCommit groupCommit, Replicator replicator)
+            throws InterruptedException {
         final int OPTION_VALUE = 128;
 
-        EventLoopGroup bossGroup = new NioEventLoopGroup(N_THREADS);
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        TrafficMetricsHandler trafficMetricsHandler = new TrafficMetricsHandler(metrics);
 
         ServerBootstrap server = new ServerBootstrap();
         server.group(bossGroup, workerGroup);
-        server.channel(NioServerSocketChannel.class);
+        server.channel(Transport.serverChannelClass());
         server.option(ChannelOption.SO_BACKLOG, OPTION_VALUE);
+        server.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
         server.childOption(ChannelOption.SO_KEEPALIVE, true);
+        server.childOption(ChannelOption.TCP_NODELAY, true);
+        server.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        server.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(WRITE_BUFFER_LOW, WRITE_BUFFER_HIGH));
         server.childHandler(new ChannelInitializer<>() {
             @Override
             protected void initChannel(Channel ch) {
                 ch.pipeline().addLast(
-                        new ObjectEncoder(),
-                        new ObjectDecoder(MAX_OBJECT_SIZE, ClassResolvers.cacheDisabled(null)),
-                        new ServerHandler()
+                        trafficMetricsHandler,
+                        MESSAGE_ENCODER,
+                        FILE_STREAM_ENCODER,
+                        new MessageDecoder(Message.MAX_OBJECT_SIZE),
+                        new LatencyMetricsHandler(metrics),
+                        new ChunkedWriteHandler(),
+                        new AuthHandler(admissionQueue, sessionRegistry, credentialStore, bandwidthScheduler, cluster, replicator),
+                        new ServerHandler(rootDir, storageExecutor, chunkStore, metadataIndex, blockCache, groupCommit, metrics, MAX_PENDING_REQUESTS)
                 );
             }
         });
 
-        ChannelFuture future = server.bind(SERVER_PORT).sync();
-        future.channel().closeFuture().sync();
-
-        bossGroup.shutdownGracefully();
-        workerGroup.shutdownGracefully();
-    }
-
-    private static void connect(DataOutput outputStream) throws IOException {
-        final int MAX_USERS_NUM = 2;
-
-        Integer hash = outputStream.hashCode();
-        queue.add(hash);
-
-        for (int index = queue.indexOf(hash); index > 0; index = queue.indexOf(hash)) {
-            outputStream.writeInt(queue.indexOf(hash) + 1);
-            while (queue.indexOf(hash) == index) {
-                Thread.onSpinWait();
-            }
-        }
-        if (connections == MAX_USERS_NUM) {
-            outputStream.writeInt(1);
-            while (connections == MAX_USERS_NUM) {
-                Thread.onSpinWait();
-            }
-        }
-        outputStream.writeInt(SUCCESS_CODE);
-
-        connections++;
-        queue.remove(hash);
-    }
-
-    private static void authorize(DataInput inputStream, DataOutput outputStream) throws IOException, SQLException {
-        switch (inputStream.readInt()) {
-            case SUCCESS_CODE -> authenticate(inputStream, outputStream);
-            case FAILURE_CODE -> register(inputStream, outputStream);
-        }
-    }
-
-    private static void authenticate(DataInput inputStream, DataOutput outputStream) throws SQLException, IOException {
-        Statement sqlStatement = sqlConnection.createStatement();
-
-        String correctPassword;
-        while ((correctPassword = sqlStatement.executeQuery(
-                String.format("SELECT Password FROM LogPass WHERE Login = '%s';", stringFromStream(inputStream))
-        ).getString(1)) == null) {
-            outputStream.writeInt(FAILURE_CODE);
-        }
-        outputStream.writeInt(SUCCESS_CODE);
-
-        while (!stringFromStream(inputStream).equals(correctPassword)) {
-            outputStream.writeInt(FAILURE_CODE);
-        }
-        outputStream.writeInt(SUCCESS_CODE);
-    }
-
-    private static void register(DataInput inputStream, DataOutput outputStream) throws SQLException, IOException {
-        Statement sqlStatement = sqlConnection.createStatement();
-
-        String login;
-        while (sqlStatement.executeQuery(
-                String.format("SELECT Password FROM LogPass WHERE Login = '%s';", login = stringFromStream(inputStream))
-        ).getString(1) != null) {
-            outputStream.writeInt(FAILURE_CODE);
-        }
-        outputStream.writeInt(SUCCESS_CODE);
-
-        sqlStatement.execute(String.format("INSERT INTO LogPass (Login, Password) VALUES ('%s', '%s');", login, stringFromStream(inputStream)));
-    }
-
-    private static String stringFromStream(DataInput inputStream) throws IOException {
-        byte[] stringBytes = new byte[inputStream.readInt()];
-        inputStream.readFully(stringBytes);
-        return new String(stringBytes, StandardCharsets.UTF_8);
-    }
-
-    private static void disconnect(DataInput inputStream) throws IOException {
-        inputStream.readInt();
-        connections--;
+        return server.bind(port).sync().channel();
     }
-}
\ No newline at end of file
+}
@@ -1,127 +1,991 @@
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.stream.ChunkedNioFile;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.Objects;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class ServerHandler extends SimpleChannelInboundHandler<Message> {
-    private final Path rootDir = new File(
-            new File(new File(Objects.requireNonNull(Server.class.getResource("/")).getPath()).getParent()).getParent()
-    ).toPath().getFileName();
+    static final String UPLOAD_DIR = ".upload";
+    static final String REPLICA_DIR = ".replica";
+
+    private static final Set<String> BULK_COMMANDS = Set.of(Message.EXPORT_COMMAND, Message.CHUNK_COMMAND, Message.COMMIT_COMMAND,
+            Message.SIGNATURE_COMMAND, Message.UPDATE_COMMAND, Message.DELTA_COMMAND, Message.PUT_BATCH_COMMAND);
+    private static final Set<String> MODIFYING_COMMANDS = Set.of(Message.PUT_COMMAND, Message.EXPORT_COMMAND, Message.COMMIT_COMMAND,
+            Message.CHUNK_COMMAND, Message.MANIFEST_COMMAND, Message.DELETE_COMMAND, Message.UPDATE_COMMAND, Message.DELTA_COMMAND,
+            Message.PUT_BATCH_COMMAND, Message.DELETE_BATCH_COMMAND);
+
+    private record Upload(Path tempPath, FileChannel fileChannel, StreamDigest digest) {
+    }
+
+    private final Path rootDir;
+
+    private final StorageExecutor storageExecutor;
+    private final ChunkStore chunkStore;
+    private final MetadataIndex metadataIndex;
+    private final BlockCache blockCache;
+    private final GroupCommit groupCommit;
+    private final ServerMetrics metrics;
+    private final Map<Path, Upload> uploads = new ConcurrentHashMap<>();
+    private final Map<Path, PendingUpdate> updates = new ConcurrentHashMap<>();
+    private final Map<Path, StreamDigest> replicaDigests = new ConcurrentHashMap<>();
+    private final int maxPendingRequests;
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    public ServerHandler(Path rootDir, StorageExecutor storageExecutor, ChunkStore chunkStore, MetadataIndex metadataIndex,
+                         BlockCache blockCache, GroupCommit groupCommit, ServerMetrics metrics, int maxPendingRequests) {
+        this.rootDir = rootDir;
+        this.storageExecutor = storageExecutor;
+        this.chunkStore = chunkStore;
+        this.metadataIndex = metadataIndex;
+        this.blockCache = blockCache;
+        this.groupCommit = groupCommit;
+        this.metrics = metrics;
+        this.maxPendingRequests = maxPendingRequests;
+    }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Message msg) {
+        Session session = ctx.channel().attr(AuthHandler.SESSION).get();
+        if (session == null) {
+            replicaCase(ctx, msg);
+            return;
+        }
+        if (session.isReadOnly() && MODIFYING_COMMANDS.contains(msg.command())) {
+            sendFailureCallback(ctx, msg);
+            return;
+        }
+
         switch (msg.command()) {
-            case Message.PUT_COMMAND -> putCase(ctx, msg);
-            case Message.EXPORT_COMMAND -> exportCase(ctx, msg);
-            case Message.GET_COMMAND -> getCase(ctx, msg);
-            case Message.IMPORT_COMMAND -> importCase(ctx, msg);
-            case Message.DELETE_COMMAND -> deleteCase(ctx, msg);
+            case Message.MISSING_COMMAND -> {
+                submit(ctx, msg, null, () -> missingCase(ctx, msg));
+                return;
+            }
+            case Message.CHUNK_COMMAND -> {
+                submit(ctx, msg, null, () -> chunkCase(ctx, msg));
+                return;
+            }
+            case Message.LIST_COMMAND -> {
+                submit(ctx, msg, null, () -> listCase(ctx, msg));
+                return;
+            }
+            case Message.PUT_BATCH_COMMAND -> {
+                submit(ctx, msg, null, () -> putBatchCase(ctx, msg));
+                return;
+            }
+            case Message.GET_BATCH_COMMAND -> {
+                submit(ctx, msg, null, () -> getBatchCase(ctx, msg));
+                return;
+            }
+            case Message.DELETE_BATCH_COMMAND -> {
+                submit(ctx, msg, null, () -> deleteBatchCase(ctx, msg));
+                return;
+            }
+            case Message.SYNC_COMMAND -> {
+                submit(ctx, msg, null, () -> syncCase(ctx, msg));
+                return;
+            }
+            case Message.STATS_COMMAND -> {
+                statsCase(ctx, msg);
+                return;
+            }
+        }
+
+        Path path = resolvePath(ctx, msg.path());
+        if (path == null) {
+            sendFailureCallback(ctx, msg);
+            return;
         }
+
+        submit(ctx, msg, path, () -> {
+            switch (msg.command()) {
+                case Message.PUT_COMMAND -> putCase(ctx, msg, path);
+                case Message.EXPORT_COMMAND -> exportCase(ctx, msg, path);
+                case Message.COMMIT_COMMAND -> commitCase(ctx, msg, path);
+                case Message.MANIFEST_COMMAND -> manifestCase(ctx, msg, path);
+                case Message.GET_COMMAND -> getCase(ctx, msg, path);
+                case Message.IMPORT_COMMAND -> importCase(ctx, msg, path);
+                case Message.DELETE_COMMAND -> deleteCase(ctx, msg, path);
+                case Message.SIGNATURE_COMMAND -> signatureCase(ctx, msg, path);
+                case Message.UPDATE_COMMAND -> updateCase(ctx, msg, path);
+                case Message.DELTA_COMMAND -> deltaCase(ctx, msg, path);
+                case Message.STAT_COMMAND -> statCase(ctx, msg, path);
+                default -> sendFailureCallback(ctx, msg);
+            }
+        });
     }
 
-    private void putCase(ChannelHandlerContext ctx, Message requestMsg) {
-        Path path = rootDir.resolve(requestMsg.file().toPath());
+    @FunctionalInterface
+    private interface RequestTask {
+        void run() throws Exception;
+    }
 
-        try {
-            Files.createDirectories(path.getParent());
+    private void submit(ChannelHandlerContext ctx, Message msg, Path path, RequestTask task) {
+        StorageExecutor.StorageTask<Void> storageTask = () -> {
+            long startTime = System.nanoTime();
             try {
-                Files.createFile(path);
-                try {
-                    Files.write(path, requestMsg.data());
+                task.run();
+            } finally {
+                metrics.recordDisk(System.nanoTime() - startTime);
+            }
+            return null;
+        };
 
-                    sendSuccessCallback(ctx);
-                } catch (IOException e) {
-                    handleException(ctx, e);
+        msg.retain();
+        acquirePending(ctx);
+        StorageExecutor.Share share = share(ctx, BULK_COMMANDS.contains(msg.command()));
+        (path == null ? storageExecutor.submit(share, storageTask) : storageExecutor.submit(path, share, storageTask)).whenComplete((result, e) -> {
+            msg.release();
+            releasePending(ctx);
+            if (e != null) {
+                if (path != null && MODIFYING_COMMANDS.contains(msg.command())) {
+                    discard(path);
                 }
-            } catch (IOException e) {
-                sendFailureCallback(ctx);
+                handleException(ctx, msg, e);
             }
-        } catch (IOException e) {
-            handleException(ctx, e);
+        });
+    }
+
+    private void acquirePending(ChannelHandlerContext ctx) {
+        if (pendingRequests.incrementAndGet() >= maxPendingRequests) {
+            ctx.channel().config().setAutoRead(false);
         }
     }
 
-    private void exportCase(ChannelHandlerContext ctx, Message requestMsg) {
-        try {
-            Files.write(rootDir.resolve(requestMsg.file().toPath()), requestMsg.data(), StandardOpenOption.APPEND);
+    private void releasePending(ChannelHandlerContext ctx) {
+        if (pendingRequests.decrementAndGet() <= maxPendingRequests / 2 && !ctx.channel().config().isAutoRead()) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private void hash(ChannelHandlerContext ctx, Upload upload, ByteBuf data, Consumer<StreamDigest> update) {
+        data.retain();
+        acquirePending(ctx);
+        storageExecutor.submit(upload.tempPath(), share(ctx, true), () -> {
+            update.accept(upload.digest());
+            return null;
+        }).whenComplete((result, e) -> {
+            data.release();
+            releasePending(ctx);
+        });
+    }
+
+    private StorageExecutor.Share share(ChannelHandlerContext ctx, boolean isBulk) {
+        Session session = ctx.channel().attr(AuthHandler.SESSION).get();
+        return session == null ? new StorageExecutor.Share(ctx.channel().attr(AuthHandler.PEER).get(), 1, true)
+                : new StorageExecutor.Share(session.login(), session.weight(), isBulk);
+    }
+
+    private Path resolvePath(ChannelHandlerContext ctx, String name) {
+        if (name == null) {
+            return null;
+        }
 
-            sendSuccessCallback(ctx);
+        Path userDir = userDir(ctx);
+        Path path = userDir.resolve(name).normalize();
+        return path.startsWith(userDir) && !path.equals(userDir) ? path : null;
+    }
+
+    private Path userDir(ChannelHandlerContext ctx) {
+        return rootDir.resolve(ctx.channel().attr(AuthHandler.SESSION).get().login());
+    }
+
+    private void putCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        Path tempPath = stagingPath(path);
+        if (isStored(path)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        Files.createDirectories(tempPath.getParent());
+        try {
+            Files.createFile(tempPath);
         } catch (IOException e) {
-            handleException(ctx, e);
+            sendFailureCallback(ctx, requestMsg);
+            return;
         }
+
+        FileChannel fileChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE);
+        Upload upload = new Upload(tempPath, fileChannel, new StreamDigest());
+        uploads.put(path, upload);
+        writeData(fileChannel, 0, requestMsg.data());
+        hash(ctx, upload, requestMsg.data(), digest -> digest.update(0, requestMsg.data()));
+
+        sendSuccessCallback(ctx, requestMsg);
+    }
+
+    private void exportCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        Upload upload = uploads.get(path);
+        ByteBuf data = unseal(requestMsg.data());
+        if (upload == null || data == null) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        writeData(upload.fileChannel(), requestMsg.offset(), data);
+        int dataCrc = Checksum.sealed(requestMsg.data());
+        hash(ctx, upload, data, digest -> digest.update(requestMsg.offset(), data, dataCrc));
+
+        sendSuccessCallback(ctx, requestMsg);
     }
 
-    private void getCase(ChannelHandlerContext ctx, Message requestMsg) {
-        if (Files.exists(rootDir.resolve(requestMsg.file().toPath()))) {
-            sendSuccessCallback(ctx);
+    private void commitCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        Path tempPath;
+        StreamDigest digest;
+        boolean isReplace;
+        PendingUpdate update = updates.remove(path);
+        Upload upload = update == null ? uploads.remove(path) : null;
+        if (update != null) {
+            update.close();
+            tempPath = update.tempPath();
+            digest = update.digest();
+            isReplace = true;
+        } else if (upload != null) {
+            upload.fileChannel().close();
+            tempPath = upload.tempPath();
+            digest = upload.digest();
+            isReplace = false;
         } else {
-            sendFailureCallback(ctx);
+            sendFailureCallback(ctx, requestMsg);
+            return;
         }
+
+        StorageExecutor.Share share = share(ctx, true);
+        CompletableFuture<?> hashed = upload != null ? storageExecutor.submit(tempPath, share, () -> null) : CompletableFuture.completedFuture(null);
+        hashed.thenCompose(result -> publish(share, tempPath, path, isReplace, digest)).whenComplete((isPublished, e) -> {
+            if (e != null) {
+                handleException(ctx, requestMsg, e);
+            } else if (isPublished) {
+                sendSuccessCallback(ctx, requestMsg);
+            } else {
+                sendFailureCallback(ctx, requestMsg);
+            }
+        });
     }
 
-    private void importCase(ChannelHandlerContext ctx, Message requestMsg) {
-        Path path = rootDir.resolve(requestMsg.file().toPath());
-        File file = new File(path.toString());
+    private CompletableFuture<Boolean> publish(StorageExecutor.Share share, Path tempPath, Path path, boolean isReplace, StreamDigest digest) {
+        CompletableFuture<List<Path>> moved = chunkStore != null
+                ? storageExecutor.submit(path, share, () -> stageChunks(tempPath, path, isReplace))
+                        .thenCompose(staging -> staging == null ? CompletableFuture.completedFuture(null)
+                                : commitChunks(share, staging, path, isReplace, () -> {
+                                    FileMeta meta = digest.finish(tempPath);
+                                    Files.delete(tempPath);
+                                    return meta;
+                                }))
+                : groupCommit.syncFile(tempPath)
+                        .thenCompose(result -> storageExecutor.submit(path, share, () -> moveStaged(tempPath, path, isReplace, digest)));
+        return moved
+                .thenCompose(dirs -> dirs == null ? CompletableFuture.completedFuture(false)
+                        : groupCommit.syncPublished(dirs).thenApply(result -> true))
+                .whenComplete((isPublished, e) -> {
+                    if (e != null) {
+                        try {
+                            Files.deleteIfExists(tempPath);
+                        } catch (IOException ignored) {
+                        }
+                    }
+                });
+    }
 
-        long clientFileSize = Long.parseLong(new String(requestMsg.data()));
-        long delta = file.length() - clientFileSize;
-        if (delta >= 0) {
-            try {
-                FileInputStream fileStream = new FileInputStream(file);
-                fileStream.getChannel().position(clientFileSize);
+    private List<Path> moveStaged(Path tempPath, Path path, boolean isReplace, StreamDigest digest) throws IOException {
+        Path file = rootDir.relativize(path);
+        if (!isReplace && isStored(path)) {
+            Files.delete(tempPath);
+            return null;
+        }
 
-                byte[] data = new byte[(int) Math.min(Server.MAX_DATA_SIZE, delta)];
-                if (fileStream.read(data) != -1) {
-                    ChannelFuture future = ctx.writeAndFlush(new Message(Message.IMPORT_COMMAND, requestMsg.file(), data));
-                    future.addListener(ChannelFutureListener.CLOSE);
-                } else {
-                    handleException(ctx, new RuntimeException("Ошибка при считывании данных из файла " + file));
+        FileMeta meta = digest.finish(tempPath);
+        List<Path> dirs = new ArrayList<>();
+        for (Path dir = path.getParent(); dirs.isEmpty() || !Files.isDirectory(dirs.get(dirs.size() - 1)); dir = dir.getParent()) {
+            dirs.add(dir);
+        }
+        Files.createDirectories(path.getParent());
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        metadataIndex.put(file, meta);
+        invalidate(path);
+        return dirs;
+    }
+
+    private ChunkStore.Staging stageChunks(Path tempPath, Path path, boolean isReplace) throws IOException {
+        if (!isReplace && isStored(path)) {
+            Files.delete(tempPath);
+            return null;
+        }
+        return chunkStore.stage(tempPath);
+    }
+
+    private CompletableFuture<List<Path>> commitChunks(StorageExecutor.Share share, ChunkStore.Staging staging, Path path, boolean isReplace,
+                                                       StorageExecutor.StorageTask<FileMeta> describe) {
+        Path file = rootDir.relativize(path);
+        return groupCommit.syncFiles(staging.files())
+                .thenCompose(result -> storageExecutor.submit(path, share, () -> {
+                    FileMeta meta = describe.call();
+                    List<Path> dirs = chunkStore.commit(staging, file, isReplace);
+                    if (dirs != null) {
+                        metadataIndex.put(file, meta);
+                        invalidate(path);
+                    }
+                    return dirs;
+                }))
+                .whenComplete((dirs, e) -> {
+                    if (e != null) {
+                        try {
+                            chunkStore.abort(staging);
+                        } catch (IOException ignored) {
+                        }
+                    }
+                });
+    }
+
+    private Path stagingPath(Path path) {
+        return rootDir.resolve(UPLOAD_DIR).resolve(rootDir.relativize(path));
+    }
+
+    private boolean isStored(Path path) throws IOException {
+        Path file = rootDir.relativize(path);
+        return Files.exists(path) || metadataIndex.find(file) != null || chunkStore != null && chunkStore.hasManifest(file);
+    }
+
+    private void missingCase(ChannelHandlerContext ctx, Message requestMsg) {
+        if (chunkStore == null) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        ByteBuf hashes = requestMsg.data();
+        BitSet missingChunks = new BitSet();
+        for (int index = 0; hashes.readableBytes() >= Chunker.HASH_SIZE; index++) {
+            String name = ByteBufUtil.hexDump(hashes, hashes.readerIndex(), Chunker.HASH_SIZE);
+            hashes.skipBytes(Chunker.HASH_SIZE);
+            if (chunkStore.isMissing(name)) {
+                missingChunks.set(index);
+            }
+        }
+
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, Unpooled.wrappedBuffer(missingChunks.toByteArray())));
+    }
+
+    private void chunkCase(ChannelHandlerContext ctx, Message requestMsg) throws IOException {
+        String name = requestMsg.path();
+        if (chunkStore == null || name == null || name.length() != 2 * Chunker.HASH_SIZE || !ChunkStore.isValid(name, requestMsg.data())) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+        if (!chunkStore.isMissing(name)) {
+            sendSuccessCallback(ctx, requestMsg);
+            return;
+        }
+
+        Path tempPath = chunkStore.writeChunk(name, requestMsg.data());
+        StorageExecutor.Share share = share(ctx, true);
+        groupCommit.syncFile(tempPath)
+                .thenCompose(result -> storageExecutor.submit(share, () -> chunkStore.moveChunk(tempPath, name)))
+                .thenCompose(groupCommit::syncDirs)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        try {
+                            Files.deleteIfExists(tempPath);
+                        } catch (IOException ignored) {
+                        }
+                        handleException(ctx, requestMsg, e);
+                    } else {
+                        sendSuccessCallback(ctx, requestMsg);
+                    }
+                });
+    }
+
+    private void manifestCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        List<ChunkStore.ChunkRef> chunks = ChunkStore.parseRefs(requestMsg.data());
+        ChunkStore.Staging staging = chunkStore == null || Files.exists(path) ? null : chunkStore.stage(chunks);
+        if (staging == null) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        long modified = System.currentTimeMillis();
+        commitChunks(share(ctx, true), staging, path, false, () -> {
+            try (InputStream inputStream = chunkStore.openStream(chunks)) {
+                return StreamDigest.describe(inputStream, ChunkStore.size(chunks), modified);
+            }
+        }).thenCompose(dirs -> dirs == null ? CompletableFuture.completedFuture(false)
+                : groupCommit.syncPublished(dirs).thenApply(result -> true)).whenComplete((isPublished, e) -> {
+            if (e != null) {
+                handleException(ctx, requestMsg, e);
+            } else if (isPublished) {
+                sendSuccessCallback(ctx, requestMsg);
+            } else {
+                sendFailureCallback(ctx, requestMsg);
+            }
+        });
+    }
+
+    private ByteBuf unseal(ByteBuf data) {
+        ByteBuf payload = Checksum.unseal(data);
+        if (payload == null) {
+            metrics.recordCorruption();
+        }
+        return payload;
+    }
+
+    static void writeData(FileChannel fileChannel, long position, ByteBuf data) throws IOException {
+        for (int written = 0; written < data.readableBytes(); ) {
+            written += data.getBytes(data.readerIndex() + written, fileChannel, position + written, data.readableBytes() - written);
+        }
+    }
+
+    private void getCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        FileMeta meta = metadataIndex.find(rootDir.relativize(path));
+        if (meta != null) {
+            ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, Unpooled.copyLong(meta.size())));
+        } else {
+            sendFailureCallback(ctx, requestMsg);
+        }
+    }
+
+    private void statCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        FileMeta meta = metadataIndex.find(rootDir.relativize(path));
+        if (meta == null) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        ByteBuf details = Unpooled.buffer(2 * Long.BYTES + Checksum.SIZE + meta.hash().length)
+                .writeLong(meta.size()).writeLong(meta.modified()).writeInt(meta.crc()).writeBytes(meta.hash());
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, details));
+    }
+
+    private void listCase(ChannelHandlerContext ctx, Message requestMsg) throws IOException {
+        Path userDir = userDir(ctx);
+        Path dir = requestMsg.path() == null ? userDir : userDir.resolve(requestMsg.path()).normalize();
+        int limit = requestMsg.data().readableBytes() >= Integer.BYTES ? requestMsg.data().readInt() : Message.MAX_LIST_SIZE;
+        if (!dir.startsWith(userDir) || requestMsg.offset() < 0 || limit <= 0) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        limit = Math.min(limit, Message.MAX_LIST_SIZE);
+        List<MetadataIndex.Entry> entries = metadataIndex.list(rootDir.relativize(dir), requestMsg.offset(), limit + 1);
+        ByteBuf details = Unpooled.buffer();
+        details.writeBoolean(entries.size() > limit);
+        for (MetadataIndex.Entry entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+            details.writeBoolean(entry.isDirectory());
+            MessageEncoder.writeVarLong(details, name.length);
+            details.writeBytes(name);
+            MessageEncoder.writeVarLong(details, entry.size());
+            MessageEncoder.writeVarLong(details, entry.modified());
+        }
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, details));
+    }
+
+    private void importCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        File file = path.toFile();
+        List<ChunkStore.ChunkRef> chunks = null;
+        if (!file.isFile() && (chunkStore == null || (chunks = chunkStore.readManifest(rootDir.relativize(path))) == null)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        long fileSize = chunks == null ? file.length() : ChunkStore.size(chunks);
+        long offset = requestMsg.offset();
+        boolean isRange = requestMsg.data().readableBytes() >= Long.BYTES;
+        long length = isRange ? requestMsg.data().readLong() : fileSize - offset;
+        if (offset < 0 || length < 0 || offset + length > fileSize) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        if (chunks == null) {
+            writeRegion(ctx, requestMsg, file, offset, offset, length);
+        } else {
+            long chunkOffset = 0;
+            for (ChunkStore.ChunkRef chunk : chunks) {
+                long from = Math.max(offset, chunkOffset);
+                long to = Math.min(offset + length, chunkOffset + chunk.length());
+                if (from < to) {
+                    writeRegion(ctx, requestMsg, chunkStore.chunkPath(chunk.name()).toFile(), from, from - chunkOffset, to - from);
                 }
-            } catch (IOException e) {
-                handleException(ctx, e);
+                chunkOffset += chunk.length();
             }
+        }
+
+        FileMeta meta = isRange ? metadataIndex.find(rootDir.relativize(path)) : null;
+        if (meta != null && meta.size() == fileSize && meta.hasRangeCrc(offset, length)) {
+            ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, Unpooled.copyInt(meta.rangeCrc(offset, length))));
         } else {
-            sendFailureCallback(ctx);
+            sendSuccessCallback(ctx, requestMsg);
         }
     }
 
-    private void deleteCase(ChannelHandlerContext ctx, Message requestMsg) {
+    private void writeRegion(ChannelHandlerContext ctx, Message requestMsg, File file, long offset, long fileOffset, long length) throws IOException {
+        if (ctx.pipeline().get(CompressionCodec.class) == null) {
+            ctx.write(new FileStream(requestMsg.id(), Message.IMPORT_COMMAND, requestMsg.path(), offset,
+                    new DefaultFileRegion(file, fileOffset, length)));
+        } else if (blockCache != null) {
+            ctx.write(new CachedFileStream(requestMsg.id(), Message.IMPORT_COMMAND, requestMsg.path(), offset,
+                    blockCache, file.toPath(), fileOffset, length));
+        } else {
+            ctx.write(new ChunkedFileStream(requestMsg.id(), Message.IMPORT_COMMAND, requestMsg.path(), offset,
+                    new ChunkedNioFile(FileChannel.open(file.toPath(), StandardOpenOption.READ), fileOffset, length, Message.MAX_DATA_SIZE)));
+        }
+    }
+
+    private void signatureCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        List<ChunkStore.ChunkRef> chunks = null;
+        if (!Files.isRegularFile(path) && (chunkStore == null || (chunks = chunkStore.readManifest(rootDir.relativize(path))) == null)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        long fileSize = chunks == null ? Files.size(path) : ChunkStore.size(chunks);
+        int blockSize = Delta.blockSize(fileSize);
+        ByteBuf[] entries = {ctx.alloc().buffer()};
+        try (InputStream inputStream = chunks == null ? Files.newInputStream(path) : chunkStore.openStream(chunks)) {
+            Delta.writeSignature(inputStream, blockSize, (weak, strong) -> {
+                entries[0].writeInt(weak).writeBytes(strong);
+                if (entries[0].readableBytes() + Delta.SIGNATURE_ENTRY_SIZE > Message.MAX_DATA_SIZE) {
+                    ctx.write(new Message(requestMsg.id(), Message.SIGNATURE_COMMAND, requestMsg.path(), entries[0]));
+                    entries[0] = ctx.alloc().buffer();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            entries[0].release();
+            throw e;
+        }
+        if (entries[0].isReadable()) {
+            ctx.write(new Message(requestMsg.id(), Message.SIGNATURE_COMMAND, requestMsg.path(), entries[0]));
+        } else {
+            entries[0].release();
+        }
+
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE,
+                Unpooled.buffer(Integer.BYTES + Long.BYTES).writeInt(blockSize).writeLong(fileSize)));
+    }
+
+    private void updateCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        List<ChunkStore.ChunkRef> chunks = null;
+        if (updates.containsKey(path) || uploads.containsKey(path) || requestMsg.data().readableBytes() < Integer.BYTES
+                || !Files.isRegularFile(path) && (chunkStore == null || (chunks = chunkStore.readManifest(rootDir.relativize(path))) == null)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        int blockSize = requestMsg.data().readInt();
+        if (blockSize <= 0 || blockSize > Delta.MAX_BLOCK_SIZE) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        updates.put(path, new PendingUpdate(path, stagingPath(path).getParent(), chunks, chunkStore, blockSize));
+
+        sendSuccessCallback(ctx, requestMsg);
+    }
+
+    private void deltaCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        PendingUpdate update = updates.get(path);
+        ByteBuf ops = unseal(requestMsg.data());
+        if (update == null || ops == null) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        Delta.apply(ops, update.blockSize(), update);
+
+        sendSuccessCallback(ctx, requestMsg);
+    }
+
+    private void deleteCase(ChannelHandlerContext ctx, Message requestMsg, Path path) throws IOException {
+        if (deleteFile(path)) {
+            sendSuccessCallback(ctx, requestMsg);
+        } else {
+            sendFailureCallback(ctx, requestMsg);
+        }
+    }
+
+    private boolean deleteFile(Path path) throws IOException {
+        if (chunkStore == null || !chunkStore.deleteManifest(rootDir.relativize(path))) {
+            try {
+                Files.delete(path);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        metadataIndex.remove(rootDir.relativize(path));
+        invalidate(path);
+        return true;
+    }
+
+    private void putBatchCase(ChannelHandlerContext ctx, Message requestMsg) {
+        Map<Path, ByteBuf> files = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
         try {
-            Files.delete(rootDir.resolve(requestMsg.file().toPath()));
+            for (ByteBuf entries = requestMsg.data(); entries.isReadable(); ) {
+                String name = readString(entries);
+                ByteBuf data = entries.readSlice((int) MessageDecoder.readVarLong(entries));
+                if (Checksum.crc(data) != entries.readInt()) {
+                    metrics.recordCorruption();
+                    sendFailureCallback(ctx, requestMsg);
+                    return;
+                }
+                names.add(name);
+
+                Path path = resolvePath(ctx, name);
+                if (path != null) {
+                    files.putIfAbsent(path, data);
+                }
+            }
+        } catch (RuntimeException e) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
 
-            sendSuccessCallback(ctx);
+        StorageExecutor.Share share = share(ctx, true);
+        Map<Path, CompletableFuture<Boolean>> results = new HashMap<>();
+        for (Map.Entry<Path, ByteBuf> file : files.entrySet()) {
+            Path path = file.getKey();
+            Path tempPath = stagingPath(path);
+            results.put(path, storageExecutor.submit(path, share, () -> stageFile(path, tempPath, file.getValue()))
+                    .thenCompose(digest -> digest != null ? publish(share, tempPath, path, false, digest) : CompletableFuture.completedFuture(false))
+                    .exceptionally(e -> false));
+        }
+
+        requestMsg.retain();
+        acquirePending(ctx);
+        CompletableFuture.allOf(results.values().toArray(CompletableFuture[]::new)).whenComplete((result, e) -> {
+            requestMsg.release();
+            releasePending(ctx);
+
+            ByteBuf statuses = Unpooled.buffer(names.size());
+            Set<Path> storedFiles = new HashSet<>();
+            for (String name : names) {
+                Path path = resolvePath(ctx, name);
+                boolean isStored = path != null && results.get(path).join() && storedFiles.add(path);
+                statuses.writeByte(isStored ? Message.SUCCESS_CODE : Message.FAILURE_CODE);
+            }
+            ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, statuses));
+        });
+    }
+
+    private StreamDigest stageFile(Path path, Path tempPath, ByteBuf data) throws IOException {
+        if (uploads.containsKey(path) || isStored(path)) {
+            return null;
+        }
+
+        Files.createDirectories(tempPath.getParent());
+        try {
+            Files.createFile(tempPath);
         } catch (IOException e) {
-            sendFailureCallback(ctx);
+            return null;
         }
+        try (FileChannel fileChannel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            writeData(fileChannel, 0, data);
+        }
+
+        StreamDigest digest = new StreamDigest();
+        digest.update(0, data);
+        return digest;
     }
 
-    private void sendSuccessCallback(ChannelHandlerContext ctx) {
-        ChannelFuture future = ctx.writeAndFlush(new Message(Message.REPORT_COMMAND, null, new byte[]{Server.SUCCESS_CODE}));
-        future.addListener(ChannelFutureListener.CLOSE);
+    private void getBatchCase(ChannelHandlerContext ctx, Message requestMsg) throws IOException {
+        Path userDir = userDir(ctx);
+        Path dir = requestMsg.path() == null ? userDir : userDir.resolve(requestMsg.path()).normalize();
+        if (!dir.startsWith(userDir)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        ctx.writeAndFlush(new BatchFileStream(requestMsg.id(), requestMsg.command(), requestMsg.path(),
+                rootDir, userDir, chunkStore, metadataIndex.walk(rootDir.relativize(dir)))).addListener(future -> {
+            if (!future.isSuccess() && ctx.channel().isActive()) {
+                handleException(ctx, requestMsg, future.cause());
+            }
+        });
     }
 
-    private void sendFailureCallback(ChannelHandlerContext ctx) {
-        ChannelFuture future = ctx.writeAndFlush(new Message(Message.REPORT_COMMAND, null, new byte[]{Server.FAILURE_CODE}));
-        future.addListener(ChannelFutureListener.CLOSE);
+    private void deleteBatchCase(ChannelHandlerContext ctx, Message requestMsg) throws IOException {
+        PathMatcher matcher;
+        try {
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + requestMsg.path());
+        } catch (RuntimeException e) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        Path userDir = userDir(ctx);
+        StorageExecutor.Share share = share(ctx, false);
+        Map<Path, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+        for (Path file : metadataIndex.walk(rootDir.relativize(userDir))) {
+            Path path = rootDir.resolve(file);
+            if (matcher.matches(userDir.relativize(path))) {
+                results.put(path, storageExecutor.submit(path, share, () -> deleteFile(path)).exceptionally(e -> false));
+            }
+        }
+
+        CompletableFuture.allOf(results.values().toArray(CompletableFuture[]::new)).whenComplete((result, e) -> {
+            ByteBuf frame = Unpooled.buffer();
+            for (Map.Entry<Path, CompletableFuture<Boolean>> file : results.entrySet()) {
+                byte[] name = userDir.relativize(file.getKey()).toString().getBytes(StandardCharsets.UTF_8);
+                if (frame.readableBytes() + name.length + 2 * MessageEncoder.MAX_VARLONG_SIZE >= Message.MAX_DATA_SIZE) {
+                    ctx.write(new Message(requestMsg.id(), requestMsg.command(), requestMsg.path(), frame));
+                    frame = Unpooled.buffer();
+                }
+                MessageEncoder.writeVarLong(frame, name.length);
+                frame.writeBytes(name);
+                frame.writeByte(file.getValue().join() ? Message.SUCCESS_CODE : Message.FAILURE_CODE);
+            }
+            ctx.write(new Message(requestMsg.id(), requestMsg.command(), requestMsg.path(), frame));
+            sendSuccessCallback(ctx, requestMsg);
+        });
+    }
+
+    private void syncCase(ChannelHandlerContext ctx, Message requestMsg) throws IOException {
+        Path userDir = userDir(ctx);
+        Path dir = requestMsg.path() == null ? userDir : userDir.resolve(requestMsg.path()).normalize();
+        if (!dir.startsWith(userDir)) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        long generation = metadataIndex.generation(userDir.getFileName().toString());
+        if (requestMsg.data().readableBytes() >= Long.BYTES && requestMsg.data().readLong() == generation) {
+            ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE,
+                    Unpooled.buffer(Long.BYTES + 1).writeLong(generation).writeBoolean(false)));
+            return;
+        }
+
+        long filesNum = 0;
+        ByteBuf frame = ctx.alloc().buffer();
+        for (Map.Entry<String, FileMeta> file : metadataIndex.tree(rootDir.relativize(dir)).entrySet()) {
+            byte[] name = file.getKey().getBytes(StandardCharsets.UTF_8);
+            FileMeta meta = file.getValue();
+            if (frame.readableBytes() + name.length + Checksum.SIZE + meta.hash().length + 3 * MessageEncoder.MAX_VARLONG_SIZE > Message.MAX_DATA_SIZE) {
+                ctx.write(new Message(requestMsg.id(), requestMsg.command(), requestMsg.path(), frame));
+                frame = ctx.alloc().buffer();
+            }
+            MessageEncoder.writeVarLong(frame, name.length);
+            frame.writeBytes(name);
+            MessageEncoder.writeVarLong(frame, meta.size());
+            MessageEncoder.writeVarLong(frame, meta.modified());
+            frame.writeInt(meta.crc());
+            frame.writeBytes(meta.hash());
+            filesNum++;
+        }
+        if (frame.isReadable()) {
+            ctx.write(new Message(requestMsg.id(), requestMsg.command(), requestMsg.path(), frame));
+        } else {
+            frame.release();
+        }
+
+        ByteBuf details = Unpooled.buffer().writeLong(generation).writeBoolean(true);
+        MessageEncoder.writeVarLong(details, filesNum);
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, details));
+    }
+
+    private void replicaCase(ChannelHandlerContext ctx, Message msg) {
+        Path file = msg.path() == null ? null : Path.of(msg.path()).normalize();
+        if (file == null || file.isAbsolute() || file.getNameCount() < 2 || file.getName(0).toString().startsWith(".")) {
+            sendFailureCallback(ctx, msg);
+            return;
+        }
+
+        Path path = rootDir.resolve(file);
+        Path tempPath = rootDir.resolve(REPLICA_DIR).resolve(file);
+        submit(ctx, msg, path, () -> {
+            switch (msg.command()) {
+                case Message.REPLICA_CHECK_COMMAND -> {
+                    FileMeta meta = metadataIndex.find(file);
+                    if (meta != null && ByteBufUtil.equals(Unpooled.wrappedBuffer(meta.hash()), msg.data())) {
+                        sendSuccessCallback(ctx, msg);
+                    } else {
+                        sendFailureCallback(ctx, msg);
+                    }
+                }
+                case Message.REPLICA_PUT_COMMAND -> {
+                    ByteBuf data = unseal(msg.data());
+                    if (data == null) {
+                        sendFailureCallback(ctx, msg);
+                        return;
+                    }
+
+                    Files.createDirectories(tempPath.getParent());
+                    try (FileChannel fileChannel = msg.offset() == 0
+                            ? FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                            : FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                        writeData(fileChannel, msg.offset(), data);
+                    }
+                    StreamDigest digest = msg.offset() == 0 ? new StreamDigest() : replicaDigests.get(path);
+                    if (digest != null) {
+                        digest.update(msg.offset(), data);
+                        replicaDigests.put(path, digest);
+                    }
+                    sendSuccessCallback(ctx, msg);
+                }
+                case Message.REPLICA_COMMIT_COMMAND -> replicaCommitCase(ctx, msg, file, path, tempPath);
+                case Message.REPLICA_DELETE_COMMAND -> {
+                    deleteFile(path);
+                    sendSuccessCallback(ctx, msg);
+                }
+                default -> sendFailureCallback(ctx, msg);
+            }
+        });
+    }
+
+    private void replicaCommitCase(ChannelHandlerContext ctx, Message requestMsg, Path file, Path path, Path tempPath) throws IOException {
+        StreamDigest digest = replicaDigests.remove(path);
+        if (!Files.isRegularFile(tempPath) || requestMsg.data().readableBytes() < Long.BYTES + Chunker.HASH_SIZE) {
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+
+        long modified = requestMsg.data().readLong();
+        FileMeta current = metadataIndex.find(file);
+        if (current != null && current.modified() > modified) {
+            Files.delete(tempPath);
+            sendSuccessCallback(ctx, requestMsg);
+            return;
+        }
+
+        Files.setLastModifiedTime(tempPath, FileTime.fromMillis(modified));
+        FileMeta meta = digest != null ? digest.finish(tempPath) : StreamDigest.describe(tempPath);
+        if (!ByteBufUtil.equals(Unpooled.wrappedBuffer(meta.hash()), requestMsg.data())) {
+            metrics.recordCorruption();
+            Files.delete(tempPath);
+            sendFailureCallback(ctx, requestMsg);
+            return;
+        }
+        if (chunkStore != null) {
+            commitChunks(share(ctx, true), chunkStore.stage(tempPath), path, true, () -> {
+                Files.delete(tempPath);
+                return meta;
+            }).thenCompose(groupCommit::syncPublished).whenComplete((result, e) -> {
+                if (e != null) {
+                    handleException(ctx, requestMsg, e);
+                } else {
+                    sendSuccessCallback(ctx, requestMsg);
+                }
+            });
+            return;
+        }
+
+        Files.createDirectories(path.getParent());
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        metadataIndex.put(file, meta);
+        invalidate(path);
+
+        sendSuccessCallback(ctx, requestMsg);
     }
 
-    private void handleException(ChannelHandlerContext ctx, Exception e) {
-        ChannelFuture future = ctx.writeAndFlush(new Message(Message.CRUSH_COMMAND, null, new byte[]{}));
-        future.addListener(ChannelFutureListener.CLOSE);
+    private void statsCase(ChannelHandlerContext ctx, Message requestMsg) {
+        Map<String, Long> values = metrics.snapshot();
+        ByteBuf details = ctx.alloc().buffer();
+        MessageEncoder.writeVarLong(details, values.size());
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            byte[] name = value.getKey().getBytes(StandardCharsets.UTF_8);
+            MessageEncoder.writeVarLong(details, name.length);
+            details.writeBytes(name);
+            MessageEncoder.writeVarLong(details, value.getValue());
+        }
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE, details));
+    }
 
-        throw new RuntimeException(e);
+    private static String readString(ByteBuf buf) {
+        return buf.readCharSequence((int) MessageDecoder.readVarLong(buf), StandardCharsets.UTF_8).toString();
+    }
+
+    private void invalidate(Path path) {
+        if (blockCache != null) {
+            blockCache.invalidate(path);
+        }
+    }
+
+    private void sendSuccessCallback(ChannelHandlerContext ctx, Message requestMsg) {
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.SUCCESS_CODE));
+    }
+
+    private void sendFailureCallback(ChannelHandlerContext ctx, Message requestMsg) {
+        ctx.writeAndFlush(Message.report(requestMsg.id(), Message.FAILURE_CODE));
+    }
+
+    private void handleException(ChannelHandlerContext ctx, Message requestMsg, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (isProtocolError(cause)) {
+            ChannelFuture future = ctx.writeAndFlush(new Message(requestMsg.id(), Message.CRUSH_COMMAND, null));
+            future.addListener(ChannelFutureListener.CLOSE);
+        } else {
+            sendFailureCallback(ctx, requestMsg);
+        }
+
+        exceptionCaught(ctx, cause);
+    }
+
+    private static boolean isProtocolError(Throwable cause) {
+        return cause instanceof DecoderException || cause instanceof IndexOutOfBoundsException;
+    }
+
+    private void discard(Path path) {
+        Upload upload = uploads.remove(path);
+        if (upload != null) {
+            storageExecutor.submit(path, () -> {
+                upload.fileChannel().close();
+                Files.deleteIfExists(upload.tempPath());
+                return null;
+            });
+        }
+
+        PendingUpdate update = updates.remove(path);
+        if (update != null) {
+            storageExecutor.submit(path, () -> {
+                update.abort();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        Set<Path> paths = new HashSet<>(uploads.keySet());
+        paths.addAll(updates.keySet());
+        paths.forEach(this::discard);
+        replicaDigests.clear();
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        metrics.recordError();
         cause.printStackTrace();
+        if (cause instanceof DecoderException) {
+            ctx.close();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics implements ServerMetricsMXBean {
+    private final AdmissionQueue admissionQueue;
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder acceptedChannels = new LongAdder();
+    private final LongAdder activeChannels = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder checksumFailures = new LongAdder();
+    private final LongAdder syncBatches = new LongAdder();
+    private final LongAdder syncCalls = new LongAdder();
+    private final LatencyHistogram diskLatency = new LatencyHistogram();
+    private final LatencyHistogram syncLatency = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> commandLatencies = new ConcurrentHashMap<>();
+
+    public ServerMetrics(AdmissionQueue admissionQueue) {
+        this.admissionQueue = admissionQueue;
+    }
+
+    public void recordRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public void recordWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    public void channelOpened() {
+        acceptedChannels.increment();
+        activeChannels.increment();
+    }
+
+    public void channelClosed() {
+        activeChannels.decrement();
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void recordCorruption() {
+        checksumFailures.increment();
+    }
+
+    public void recordDisk(long nanos) {
+        diskLatency.record(nanos);
+    }
+
+    public void recordSync(int callsNum, long nanos) {
+        syncBatches.increment();
+        syncCalls.add(callsNum);
+        syncLatency.record(nanos);
+    }
+
+    public void recordCommand(String command, long nanos) {
+        LatencyHistogram histogram = commandLatencies.get(command);
+        if (histogram == null) {
+            histogram = commandLatencies.computeIfAbsent(command, c -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("bytes.read", getBytesRead());
+        values.put("bytes.written", getBytesWritten());
+        values.put("channels.accepted", getAcceptedChannels());
+        values.put("channels.active", (long) getActiveChannels());
+        values.put("admission.queue", (long) getAdmissionQueueSize());
+        values.put("errors", getErrors());
+        values.put("checksum.failures", getChecksumFailures());
+        putLatency(values, "disk", getDiskLatency());
+        values.put("fsync.batches", getSyncBatches());
+        values.put("fsync.calls", getSyncCalls());
+        putLatency(values, "fsync", getSyncLatency());
+        for (Map.Entry<String, LatencyHistogram.Snapshot> command : getCommandLatencies().entrySet()) {
+            putLatency(values, "command." + command.getKey(), command.getValue());
+        }
+        return values;
+    }
+
+    private static void putLatency(Map<String, Long> values, String name, LatencyHistogram.Snapshot latency) {
+        values.put(name + ".count", latency.count());
+        values.put(name + ".mean.us", latency.meanMicros());
+        values.put(name + ".p50.us", latency.p50Micros());
+        values.put(name + ".p99.us", latency.p99Micros());
+        values.put(name + ".max.us", latency.maxMicros());
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getAcceptedChannels() {
+        return acceptedChannels.sum();
+    }
+
+    @Override
+    public int getActiveChannels() {
+        return activeChannels.intValue();
+    }
+
+    @Override
+    public int getAdmissionQueueSize() {
+        return admissionQueue.size();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getChecksumFailures() {
+        return checksumFailures.sum();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getDiskLatency() {
+        return diskLatency.snapshot();
+    }
+
+    @Override
+    public long getSyncBatches() {
+        return syncBatches.sum();
+    }
+
+    @Override
+    public long getSyncCalls() {
+        return syncCalls.sum();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSyncLatency() {
+        return syncLatency.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencyHistogram.Snapshot> getCommandLatencies() {
+        Map<String, LatencyHistogram.Snapshot> latencies = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> command : commandLatencies.entrySet()) {
+            latencies.put(command.getKey(), command.getValue().snapshot());
+        }
+        return latencies;
+    }
+}
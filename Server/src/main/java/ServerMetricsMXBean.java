@@ -0,0 +1,27 @@
+import java.util.Map;
+
+public interface ServerMetricsMXBean {
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getAcceptedChannels();
+
+    int getActiveChannels();
+
+    int getAdmissionQueueSize();
+
+    long getErrors();
+
+    long getChecksumFailures();
+
+    LatencyHistogram.Snapshot getDiskLatency();
+
+    long getSyncBatches();
+
+    long getSyncCalls();
+
+    LatencyHistogram.Snapshot getSyncLatency();
+
+    Map<String, LatencyHistogram.Snapshot> getCommandLatencies();
+}
@@ -0,0 +1,4 @@
+import io.netty.channel.group.ChannelGroup;
+
+public record Session(String login, String token, long bandwidth, int weight, boolean isReadOnly, ChannelGroup attachedChannels) {
+}
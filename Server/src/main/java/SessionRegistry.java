@@ -0,0 +1,48 @@
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SessionRegistry {
+    private static final int TOKEN_SIZE = 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    public Session open(String login, long bandwidth, int weight, boolean isReadOnly) {
+        byte[] token = new byte[TOKEN_SIZE];
+        random.nextBytes(token);
+
+        Session session = new Session(login, ByteBufUtil.hexDump(token), bandwidth, weight, isReadOnly,
+                new DefaultChannelGroup(GlobalEventExecutor.INSTANCE));
+        sessions.put(session.token(), session);
+        return session;
+    }
+
+    public Session attach(String token, Channel channel) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+
+        session.attachedChannels().add(channel);
+        if (!sessions.containsKey(token)) {
+            channel.close();
+            return null;
+        }
+        return session;
+    }
+
+    public void close(Session session) {
+        sessions.remove(session.token());
+        session.attachedChannels().close();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,159 @@
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+public class StorageExecutor implements AutoCloseable {
+    @FunctionalInterface
+    public interface StorageTask<T> {
+        T call() throws Exception;
+    }
+
+    public record Share(String owner, int weight, boolean isBulk) {
+    }
+
+    private static final Share DEFAULT_SHARE = new Share("", 1, false);
+
+    private static class Tenant {
+        private final Deque<Runnable> interactiveTasks = new ArrayDeque<>();
+        private final Deque<Runnable> bulkTasks = new ArrayDeque<>();
+        private int weight = 1;
+        private long virtualTime;
+        private int runningNum;
+
+        private boolean isIdle() {
+            return interactiveTasks.isEmpty() && bulkTasks.isEmpty() && runningNum == 0;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int threadsNum;
+    private final Map<Path, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    private long systemVirtualTime;
+    private int runningNum;
+
+    private StorageExecutor(ExecutorService executor, int threadsNum) {
+        this.executor = executor;
+        this.threadsNum = threadsNum;
+    }
+
+    public static StorageExecutor create(int threadsNum, boolean useVirtualThreads) {
+        if (useVirtualThreads) {
+            try {
+                return new StorageExecutor((ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null), Integer.MAX_VALUE);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                System.err.println("Виртуальные потоки недоступны, используется пул из " + threadsNum + " потоков");
+            }
+        }
+        return new StorageExecutor(Executors.newFixedThreadPool(threadsNum), threadsNum);
+    }
+
+    public <T> CompletableFuture<T> submit(StorageTask<T> task) {
+        return submit(DEFAULT_SHARE, task);
+    }
+
+    public <T> CompletableFuture<T> submit(Share share, StorageTask<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        enqueue(share, () -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    public <T> CompletableFuture<T> submit(Path path, StorageTask<T> task) {
+        return submit(path, DEFAULT_SHARE, task);
+    }
+
+    public <T> CompletableFuture<T> submit(Path path, Share share, StorageTask<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(path, result);
+
+        Runnable runner = () -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                tails.remove(path, result);
+            }
+        };
+
+        if (previous == null) {
+            enqueue(share, runner);
+        } else {
+            previous.whenComplete((r, e) -> enqueue(share, runner));
+        }
+        return result;
+    }
+
+    private synchronized void enqueue(Share share, Runnable runner) {
+        Tenant tenant = tenants.computeIfAbsent(share.owner(), owner -> new Tenant());
+        if (tenant.isIdle()) {
+            tenant.virtualTime = Math.max(tenant.virtualTime, systemVirtualTime);
+        }
+        tenant.weight = Math.max(1, share.weight());
+        (share.isBulk() ? tenant.bulkTasks : tenant.interactiveTasks).add(runner);
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (runningNum < threadsNum) {
+            Map.Entry<String, Tenant> next = nextTenant(false);
+            if (next == null && (next = nextTenant(true)) == null) {
+                return;
+            }
+
+            String owner = next.getKey();
+            Tenant tenant = next.getValue();
+            Runnable runner = tenant.interactiveTasks.isEmpty() ? tenant.bulkTasks.poll() : tenant.interactiveTasks.poll();
+            systemVirtualTime = Math.max(systemVirtualTime, tenant.virtualTime);
+            tenant.runningNum++;
+            runningNum++;
+
+            executor.execute(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    runner.run();
+                } finally {
+                    complete(owner, tenant, System.nanoTime() - startTime);
+                }
+            });
+        }
+    }
+
+    private Map.Entry<String, Tenant> nextTenant(boolean isBulk) {
+        Map.Entry<String, Tenant> next = null;
+        for (Map.Entry<String, Tenant> tenant : tenants.entrySet()) {
+            Deque<Runnable> tasks = isBulk ? tenant.getValue().bulkTasks : tenant.getValue().interactiveTasks;
+            if (!tasks.isEmpty() && (next == null || tenant.getValue().virtualTime < next.getValue().virtualTime)) {
+                next = tenant;
+            }
+        }
+        return next;
+    }
+
+    private synchronized void complete(String owner, Tenant tenant, long elapsed) {
+        tenant.virtualTime += elapsed / tenant.weight;
+        tenant.runningNum--;
+        runningNum--;
+        if (tenant.isIdle()) {
+            tenants.remove(owner);
+        }
+        dispatch();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
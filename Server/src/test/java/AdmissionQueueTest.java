@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AdmissionQueueTest {
+    private static final long NOTIFY_INTERVAL = 10;
+
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    private AdmissionQueue.Waiter waiter(String name) {
+        return new AdmissionQueue.Waiter() {
+            @Override
+            public void onPosition(int position) {
+                events.add(name + ":" + position);
+            }
+
+            @Override
+            public void onAdmitted() {
+                events.add(name + ":admitted");
+            }
+        };
+    }
+
+    private String nextEvent() throws InterruptedException {
+        return events.poll(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void admitsWaitersInArrivalOrder() throws InterruptedException {
+        AdmissionQueue queue = new AdmissionQueue(1, NOTIFY_INTERVAL);
+        queue.enqueue(waiter("a"));
+        queue.enqueue(waiter("b"));
+        queue.enqueue(waiter("c"));
+        assertEquals("a:admitted", nextEvent());
+        assertEquals("b:1", nextEvent());
+        assertEquals("c:2", nextEvent());
+
+        queue.release();
+        assertEquals("b:admitted", nextEvent());
+        assertEquals("c:1", nextEvent());
+
+        queue.release();
+        assertEquals("c:admitted", nextEvent());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void freesSlotWhenNobodyWaits() throws InterruptedException {
+        AdmissionQueue queue = new AdmissionQueue(2, NOTIFY_INTERVAL);
+        queue.enqueue(waiter("a"));
+        queue.enqueue(waiter("b"));
+        queue.release();
+        queue.enqueue(waiter("c"));
+        assertEquals("a:admitted", nextEvent());
+        assertEquals("b:admitted", nextEvent());
+        assertEquals("c:admitted", nextEvent());
+    }
+
+    @Test
+    void skipsCancelledWaiters() throws InterruptedException {
+        AdmissionQueue queue = new AdmissionQueue(1, NOTIFY_INTERVAL);
+        AdmissionQueue.Waiter b = waiter("b");
+        queue.enqueue(waiter("a"));
+        queue.enqueue(b);
+        queue.enqueue(waiter("c"));
+        queue.enqueue(waiter("d"));
+        assertEquals("a:admitted", nextEvent());
+        assertEquals("b:1", nextEvent());
+        assertEquals("c:2", nextEvent());
+        assertEquals("d:3", nextEvent());
+
+        queue.cancel(b);
+        assertEquals("c:1", nextEvent());
+        assertEquals("d:2", nextEvent());
+
+        queue.release();
+        assertEquals("c:admitted", nextEvent());
+        assertEquals("d:1", nextEvent());
+    }
+
+    @Test
+    void coalescesPositionUpdates() throws InterruptedException {
+        AdmissionQueue queue = new AdmissionQueue(1, 200);
+        queue.enqueue(waiter("a"));
+        for (String name : new String[]{"b", "c", "d", "e"}) {
+            queue.enqueue(waiter(name));
+        }
+        for (int i = 0; i < 5; i++) {
+            nextEvent();
+        }
+
+        queue.release();
+        queue.release();
+        queue.release();
+        assertEquals("b:admitted", nextEvent());
+        assertEquals("c:admitted", nextEvent());
+        assertEquals("d:admitted", nextEvent());
+        assertEquals("e:1", nextEvent());
+        assertNull(events.poll(400, TimeUnit.MILLISECONDS));
+    }
+}
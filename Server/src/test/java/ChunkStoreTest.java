@@ -0,0 +1,103 @@
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkStoreTest {
+    @TempDir
+    Path storeDir;
+
+    private static byte[] content(int size, int seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private Path plainFile(byte[] data) throws IOException {
+        Path plainPath = Files.createTempFile(storeDir, "plain", null);
+        Files.write(plainPath, data);
+        return plainPath;
+    }
+
+    private static String name(byte[] data) {
+        MessageDigest digest = Chunker.newDigest();
+        digest.update(data);
+        return ByteBufUtil.hexDump(digest.digest());
+    }
+
+    @Test
+    void storesStagedFile() throws IOException {
+        ChunkStore chunkStore = new ChunkStore(storeDir);
+        byte[] data = content(1_000_000, 1);
+        ChunkStore.Staging staging = chunkStore.stage(plainFile(data));
+        assertFalse(staging.files().isEmpty());
+        assertNull(chunkStore.readManifest(Path.of("Alex", "file.bin")));
+
+        assertNotNull(chunkStore.commit(staging, Path.of("Alex", "file.bin"), false));
+        List<ChunkStore.ChunkRef> chunks = chunkStore.readManifest(Path.of("Alex", "file.bin"));
+        try (InputStream inputStream = chunkStore.openStream(chunks)) {
+            assertArrayEquals(data, inputStream.readAllBytes());
+        }
+        for (Path tempPath : staging.files()) {
+            assertFalse(Files.exists(tempPath));
+        }
+    }
+
+    @Test
+    void keepsReservedChunksWhenReleasedConcurrently() throws IOException {
+        ChunkStore chunkStore = new ChunkStore(storeDir);
+        byte[] data = content(300_000, 2);
+        assertNotNull(chunkStore.commit(chunkStore.stage(plainFile(data)), Path.of("Alex", "first.bin"), false));
+
+        ChunkStore.Staging staging = chunkStore.stage(plainFile(data));
+        assertTrue(chunkStore.deleteManifest(Path.of("Alex", "first.bin")));
+        assertNotNull(chunkStore.commit(staging, Path.of("Alex", "second.bin"), false));
+
+        try (InputStream inputStream = chunkStore.openStream(chunkStore.readManifest(Path.of("Alex", "second.bin")))) {
+            assertArrayEquals(data, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void releasesChunksOfAbortedStaging() throws IOException {
+        ChunkStore chunkStore = new ChunkStore(storeDir);
+        byte[] data = content(300_000, 3);
+        assertNotNull(chunkStore.commit(chunkStore.stage(plainFile(data)), Path.of("Alex", "file.bin"), false));
+        List<ChunkStore.ChunkRef> chunks = chunkStore.readManifest(Path.of("Alex", "file.bin"));
+
+        chunkStore.abort(chunkStore.stage(plainFile(data)));
+        assertTrue(chunkStore.deleteManifest(Path.of("Alex", "file.bin")));
+        for (ChunkStore.ChunkRef chunk : chunks) {
+            assertTrue(chunkStore.isMissing(chunk.name()));
+        }
+    }
+
+    @Test
+    void dropsUnreferencedChunksAtStartup() throws IOException {
+        ChunkStore chunkStore = new ChunkStore(storeDir);
+        byte[] stored = content(1000, 4);
+        byte[] orphan = content(1000, 5);
+        for (byte[] data : List.of(stored, orphan)) {
+            chunkStore.moveChunk(chunkStore.writeChunk(name(data), Unpooled.wrappedBuffer(data)), name(data));
+        }
+        assertNotNull(chunkStore.commit(chunkStore.stage(List.of(new ChunkStore.ChunkRef(name(stored), stored.length))),
+                Path.of("Alex", "file.bin"), false));
+
+        chunkStore = new ChunkStore(storeDir);
+        assertFalse(chunkStore.isMissing(name(stored)));
+        assertTrue(chunkStore.isMissing(name(orphan)));
+        try (InputStream inputStream = chunkStore.openStream(chunkStore.readManifest(Path.of("Alex", "file.bin")))) {
+            assertArrayEquals(stored, inputStream.readAllBytes());
+        }
+    }
+}